@@ -0,0 +1,87 @@
+package solver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+
+import sudoku.Grid;
+import sudoku.GridReader;
+import sudoku.GridReader.GridFormatException;
+
+/**
+ * The known grids of {@link SudokuSolver}, and a 16x16 puzzle generated by
+ * {@link PuzzleGenerator} with a fixed seed, by the name they are passed to
+ * the benchmarks as a parameter.
+ */
+final class Fixtures {
+
+	static final String[] NAMES = {
+		"2x3", "3x3", "3x3VeryHard", "3x3Blah", "3x3AI_Escargot", "3x3_17PreFilled", "4x4"
+	};
+
+	private Fixtures() {
+	}
+
+	static Grid create(String name) {
+		if (name.equals("2x3"))
+			return SudokuSolver.createKnownGrid2x3();
+		if (name.equals("3x3"))
+			return SudokuSolver.createKnownGrid3x3();
+		if (name.equals("3x3VeryHard"))
+			return SudokuSolver.createKnownGrid3x3VeryHard();
+		if (name.equals("3x3Blah"))
+			return SudokuSolver.createKnownGrid3x3Blah();
+		if (name.equals("3x3AI_Escargot"))
+			return SudokuSolver.createKnownGrid3x3AI_Escargot();
+		if (name.equals("3x3_17PreFilled"))
+			return SudokuSolver.createKnownGrid3x3_17PreFilled();
+		if (name.equals("4x4"))
+			return read("4x4.txt");
+		throw new IllegalArgumentException("Unknown fixture " + name);
+	}
+
+	/**
+	 * @return The first puzzle of a resource next to this class.
+	 */
+	private static Grid read(String resource) {
+		InputStream in = Fixtures.class.getResourceAsStream(resource);
+		if (in == null)
+			throw new IllegalStateException("Missing resource " + resource);
+		GridReader reader = new GridReader(new InputStreamReader(in, Charset.forName("UTF-8")));
+		try {
+			try {
+				Grid grid = reader.next();
+				if (grid == null)
+					throw new IllegalStateException("No puzzle in " + resource);
+				return grid;
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot read " + resource, e);
+		} catch (GridFormatException e) {
+			throw new IllegalStateException("Cannot read " + resource, e);
+		}
+	}
+
+	/**
+	 * The solver reports its progress on System.out, which would otherwise
+	 * flood the benchmark output. The reports are still built, so their cost
+	 * is measured.
+	 */
+	static void silenceSystemOut() {
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		}));
+	}
+
+}
@@ -0,0 +1,90 @@
+package solver;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sudoku.Cell;
+import sudoku.Element;
+import sudoku.Grid;
+import sudoku.Trail;
+import util.Coord;
+
+/**
+ * The Grid operations the solvers are built on, on each fixture.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GridBenchmark {
+
+	@Param({ "2x3", "3x3", "3x3VeryHard", "3x3Blah", "3x3AI_Escargot", "3x3_17PreFilled", "4x4" })
+	public String fixture;
+
+	private Grid grid;
+	private Grid solved;
+	// A working copy of the grid, which set() is undone on through the trail
+	private Grid working;
+	private Trail trail;
+	private Coord setCoord;
+	private Element setValue;
+
+	@Setup
+	public void setup() {
+		grid = Fixtures.create(fixture);
+		Fixtures.silenceSystemOut();
+		solved = new DancingLinksSolver(grid).solve();
+
+		working = new Grid(grid);
+		trail = new Trail(working);
+		Cell guessAt = SudokuSolver.findBestChoiceGuessableCell(working);
+		setCoord = guessAt.getCoord();
+		setValue = guessAt.getAllPossible().get(0);
+	}
+
+	@Benchmark
+	public Grid copy() {
+		return new Grid(grid);
+	}
+
+	/**
+	 * Fill in a cell and undo it again through a {@link Trail}, so that every
+	 * invocation sets the same cell.
+	 */
+	@Benchmark
+	public boolean setAndUndo() {
+		int mark = trail.mark();
+		boolean allowed = working.set(setCoord, setValue);
+		trail.undo(mark);
+		return allowed;
+	}
+
+	@Benchmark
+	public boolean verify() {
+		return grid.verify();
+	}
+
+	@Benchmark
+	public boolean isSolved() {
+		return solved.isSolved();
+	}
+
+	@Benchmark
+	public Cell findBestChoiceGuessableCell() {
+		return SudokuSolver.findBestChoiceGuessableCell(grid);
+	}
+
+}
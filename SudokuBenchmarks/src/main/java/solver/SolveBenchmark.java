@@ -0,0 +1,70 @@
+package solver;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sudoku.Grid;
+
+/**
+ * Full solves of each fixture, by every solver, stopping at the first
+ * solution.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SolveBenchmark {
+
+	@Param({ "2x3", "3x3", "3x3VeryHard", "3x3Blah", "3x3AI_Escargot", "3x3_17PreFilled", "4x4" })
+	public String fixture;
+
+	private Grid grid;
+
+	@Setup
+	public void setup() {
+		grid = Fixtures.create(fixture);
+		Fixtures.silenceSystemOut();
+	}
+
+	@Benchmark
+	public List<Grid> copySearch() {
+		return new SudokuSolver(grid, SudokuSolver.SearchMode.COPY).findSolutions(1);
+	}
+
+	@Benchmark
+	public List<Grid> trailSearch() {
+		return new SudokuSolver(grid, SudokuSolver.SearchMode.TRAIL).findSolutions(1);
+	}
+
+	@Benchmark
+	public List<Grid> trailSearchSinglesOnly() {
+		SudokuSolver solver = new SudokuSolver(grid, SudokuSolver.SearchMode.TRAIL);
+		solver.setStrategyPipeline(new StrategyPipeline());
+		return solver.findSolutions(1);
+	}
+
+	@Benchmark
+	public List<Grid> dancingLinks() {
+		return new DancingLinksSolver(grid).findSolutions(1);
+	}
+
+	@Benchmark
+	public List<Grid> parallel() {
+		return new ParallelSolver(grid).findSolutions(1);
+	}
+
+}
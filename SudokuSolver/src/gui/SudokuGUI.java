@@ -518,7 +518,7 @@ public class SudokuGUI extends JFrame {
 		@Override
 		public void actionPerformed(ActionEvent arg0) {
 			SudokuSolver solver = new SudokuSolver(model);
-			Grid solvedModel = solver.solve();
+			Grid solvedModel = solver.solve(1);
 			
 			if (solvedModel == null || !solvedModel.isSolved()) {
 				JOptionPane.showMessageDialog(gui,
@@ -0,0 +1,195 @@
+package solver;
+
+import java.util.Arrays;
+import java.util.List;
+
+import sudoku.Cell;
+import sudoku.Grid;
+import sudoku.Section;
+
+/**
+ * Regin's filtering for the all-different constraint of a {@link Section}:
+ * every candidate which is not part of any assignment of distinct elements to
+ * all the unfilled {@link Cell}s of the section is ruled out. This subsumes
+ * naked and hidden subsets of every size.
+ *
+ * The unfilled cells and their possible elements form a bipartite graph, of
+ * which a maximum matching is found with augmenting paths. If it does not
+ * cover every cell, the grid is unsolvable. Otherwise a candidate outside the
+ * matching belongs to another one iff it lies on an alternating cycle, i.e.
+ * iff its cell and the cell matched to its element are in the same strongly
+ * connected component of the graph in which every cell points to the cells
+ * matched to its other candidates. The components are found with Tarjan's
+ * algorithm.
+ */
+public class AllDifferent implements Strategy {
+
+	@Override
+	public boolean apply(Grid grid) throws NoSolutionException {
+		Matching matching = new Matching(grid);
+		for (List<? extends Section> sectionCollection : grid.allSections)
+			for (Section section : sectionCollection)
+				if (section.getNumUnfilled() > 1 && matching.filter(section))
+					return true;
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return "AllDifferent";
+	}
+
+	/**
+	 * The working state of the filtering, reused for every section of a grid.
+	 * Cells are numbered by their position among the unfilled cells of the
+	 * section being filtered.
+	 */
+	private static final class Matching {
+		private final Grid grid;
+		private final Cell[] cells;
+		private int numCells;
+		// The cell matched to each element by ordinal, or -1
+		private final int[] cellOfElement;
+		private final int[] elementOfCell;
+		// The elements visited by the current augmenting path search
+		private final int[] visited;
+		private int search = 0;
+
+		// Tarjan's algorithm
+		private final int[] order;
+		private final int[] lowLink;
+		private final int[] component;
+		private final int[] stack;
+		private final boolean[] onStack;
+		private int counter;
+		private int stackSize;
+		private int numComponents;
+
+		Matching(Grid grid) {
+			int n = grid.numElements;
+			this.grid = grid;
+			this.cells = new Cell[n];
+			this.cellOfElement = new int[n];
+			this.elementOfCell = new int[n];
+			this.visited = new int[n];
+			this.order = new int[n];
+			this.lowLink = new int[n];
+			this.component = new int[n];
+			this.stack = new int[n];
+			this.onStack = new boolean[n];
+		}
+
+		/**
+		 * @return true iff any candidate was eliminated.
+		 */
+		boolean filter(Section section) throws NoSolutionException {
+			numCells = 0;
+			for (Cell cell : section)
+				if (!cell.isFilled())
+					cells[numCells++] = cell;
+			if (numCells != section.getNumUnfilled())
+				// The section is inconsistent, leave it to verification
+				return false;
+
+			if (!match())
+				throw NoSolutionException.INSTANCE;
+
+			Arrays.fill(order, 0, numCells, -1);
+			counter = 0;
+			stackSize = 0;
+			numComponents = 0;
+			for (int c = 0; c < numCells; c++)
+				if (order[c] < 0)
+					connect(c);
+
+			boolean eliminated = false;
+			for (int c = 0; c < numCells; c++) {
+				Cell cell = cells[c];
+				for (int e = cell.nextPossible(0); e >= 0; e = cell.nextPossible(e + 1)) {
+					// Only an element filled in in the section can be unmatched
+					int d = cellOfElement[e];
+					if (d < 0 || component[d] != component[c])
+						eliminated |= grid.eliminate(cell.getCoord(), grid.elements.getElement(e));
+				}
+			}
+			return eliminated;
+		}
+
+		/**
+		 * @return true iff every cell could be matched to an element.
+		 */
+		private boolean match() {
+			Arrays.fill(cellOfElement, -1);
+			Arrays.fill(visited, 0);
+			search = 0;
+			// Start from a greedy matching, and augment it for the rest
+			for (int c = 0; c < numCells; c++) {
+				elementOfCell[c] = -1;
+				Cell cell = cells[c];
+				for (int e = cell.nextPossible(0); e >= 0; e = cell.nextPossible(e + 1))
+					if (cellOfElement[e] < 0) {
+						cellOfElement[e] = c;
+						elementOfCell[c] = e;
+						break;
+					}
+			}
+			for (int c = 0; c < numCells; c++) {
+				if (elementOfCell[c] >= 0)
+					continue;
+				search++;
+				if (!augment(c))
+					return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Look for an alternating path from an unmatched cell to an unmatched
+		 * element, and swap the matching along it.
+		 */
+		private boolean augment(int c) {
+			Cell cell = cells[c];
+			for (int e = cell.nextPossible(0); e >= 0; e = cell.nextPossible(e + 1)) {
+				if (visited[e] == search)
+					continue;
+				visited[e] = search;
+				if (cellOfElement[e] < 0 || augment(cellOfElement[e])) {
+					cellOfElement[e] = c;
+					elementOfCell[c] = e;
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private void connect(int c) {
+			order[c] = lowLink[c] = counter++;
+			stack[stackSize++] = c;
+			onStack[c] = true;
+			Cell cell = cells[c];
+			for (int e = cell.nextPossible(0); e >= 0; e = cell.nextPossible(e + 1)) {
+				if (e == elementOfCell[c])
+					continue;
+				int d = cellOfElement[e];
+				if (d < 0)
+					continue;
+				if (order[d] < 0) {
+					connect(d);
+					lowLink[c] = Math.min(lowLink[c], lowLink[d]);
+				} else if (onStack[d]) {
+					lowLink[c] = Math.min(lowLink[c], order[d]);
+				}
+			}
+			if (lowLink[c] == order[c]) {
+				int d;
+				do {
+					d = stack[--stackSize];
+					onStack[d] = false;
+					component[d] = numComponents;
+				} while (d != c);
+				numComponents++;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,351 @@
+package solver;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import sudoku.Cell;
+import sudoku.Element;
+import sudoku.Grid;
+import sudoku.GridReader;
+import sudoku.GridReader.GridFormatException;
+import sudoku.SaveFormatReader;
+
+/**
+ * Solves a corpus of puzzles headlessly, read by a {@link GridReader}, or by
+ * a {@link SaveFormatReader} for a corpus all in the save format, on a pool
+ * of worker threads.
+ *
+ * Every puzzle is solved with the {@link DancingLinksSolver}, counting up to
+ * two solutions so that non-unique puzzles are reported. The results are
+ * written in input order as they come in, one line per puzzle:
+ * the puzzle number, its {@link Status} and the solution as a single line.
+ * Only a bounded number of puzzles are in flight at a time, so corpora of
+ * any size can be streamed through. With a {@link SolutionCache}, puzzles
+ * equivalent to one solved recently are not solved again.
+ */
+public class BatchSolver {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	// How many puzzles each worker may have queued before reading stops
+	private static final int IN_FLIGHT_PER_THREAD = 4;
+
+	public enum Status {
+		UNIQUE, MULTIPLE, UNSOLVABLE, INVALID
+	}
+
+	private final int numThreads;
+	private SolutionCache cache = null;
+
+	public BatchSolver(int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * @param cache Shared by all the workers, or null to solve every puzzle.
+	 */
+	public void setCache(SolutionCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Solve every puzzle of the reader and write a result line per puzzle.
+	 */
+	public Report run(final GridReader in, Writer out) throws IOException {
+		return run(new PuzzleSource() {
+			@Override
+			public Grid next() throws IOException, GridFormatException {
+				return in.next();
+			}
+		}, out);
+	}
+
+	/**
+	 * Solve every puzzle of a corpus in the save format, parsed straight from
+	 * its bytes, and write a result line per puzzle.
+	 */
+	public Report run(final SaveFormatReader in, Writer out) throws IOException {
+		return run(new PuzzleSource() {
+			@Override
+			public Grid next() throws IOException, GridFormatException {
+				// Every puzzle gets its own grid, as the workers hold on to them
+				return in.next() ? in.toGrid(null) : null;
+			}
+		}, out);
+	}
+
+	private Report run(PuzzleSource in, Writer out) throws IOException {
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		Queue<Future<Result>> inFlight = new ArrayDeque<Future<Result>>();
+		Report report = new Report();
+		long start = System.nanoTime();
+		try {
+			int number = 0;
+			while (true) {
+				Future<Result> future;
+				try {
+					Grid grid = in.next();
+					if (grid == null)
+						break;
+					future = pool.submit(new SolveTask(++number, grid, cache));
+				} catch (GridFormatException e) {
+					FutureTask<Result> invalid = new FutureTask<Result>(
+							new InvalidTask(++number, e.getMessage()));
+					invalid.run();
+					future = invalid;
+				}
+				inFlight.add(future);
+				if (inFlight.size() >= numThreads * IN_FLIGHT_PER_THREAD)
+					write(inFlight.poll(), out, report);
+			}
+			while (!inFlight.isEmpty())
+				write(inFlight.poll(), out, report);
+		} finally {
+			pool.shutdownNow();
+		}
+		out.flush();
+		report.finish(System.nanoTime() - start);
+		return report;
+	}
+
+	private static void write(Future<Result> future, Writer out, Report report) throws IOException {
+		Result result;
+		try {
+			result = future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while solving", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Solver failed", e.getCause());
+		}
+		out.write(result.number + "\t" + result.status + "\t" + result.detail + "\n");
+		report.add(result);
+	}
+
+	/**
+	 * @return The grid as a single line, in the one-puzzle-per-line format
+	 * if all elements are one character long, otherwise with the elements
+	 * separated by commas.
+	 */
+	static String toLine(Grid grid) {
+		boolean singleChars = true;
+		for (Element elem : grid.elements)
+			singleChars &= elem.content.length() == 1;
+		StringBuilder line = new StringBuilder();
+		for (Cell cell : grid) {
+			if (!singleChars && line.length() > 0)
+				line.append(',');
+			Element value = cell.getValue();
+			if (value != null)
+				line.append(value.content);
+			else if (singleChars)
+				line.append('.');
+		}
+		return line.toString();
+	}
+
+	private interface PuzzleSource {
+		/**
+		 * @return The next puzzle, or null at the end of the input.
+		 */
+		Grid next() throws IOException, GridFormatException;
+	}
+
+	private static class Result {
+		final int number;
+		final Status status;
+		// The solution, or what was wrong with the puzzle
+		final String detail;
+		// How long solving took, or -1 if the puzzle was not solved
+		final long nanos;
+
+		Result(int number, Status status, String detail, long nanos) {
+			this.number = number;
+			this.status = status;
+			this.detail = detail;
+			this.nanos = nanos;
+		}
+	}
+
+	private static class SolveTask implements Callable<Result> {
+		private final int number;
+		private final Grid grid;
+		private final SolutionCache cache;
+
+		SolveTask(int number, Grid grid, SolutionCache cache) {
+			this.number = number;
+			this.grid = grid;
+			this.cache = cache;
+		}
+
+		@Override
+		public Result call() {
+			long start = System.nanoTime();
+			int numSolutions;
+			Grid solution;
+			if (cache != null) {
+				SolutionCache.Outcome outcome = cache.solve(grid);
+				numSolutions = outcome.numSolutions;
+				solution = outcome.solution;
+			} else {
+				List<Grid> solutions = new DancingLinksSolver(grid).findSolutions(2);
+				numSolutions = solutions.size();
+				solution = solutions.isEmpty() ? null : solutions.get(0);
+			}
+			long nanos = System.nanoTime() - start;
+			if (numSolutions == 0)
+				return new Result(number, Status.UNSOLVABLE, "", nanos);
+			Status status = numSolutions == 1 ? Status.UNIQUE : Status.MULTIPLE;
+			return new Result(number, status, toLine(solution), nanos);
+		}
+	}
+
+	private static class InvalidTask implements Callable<Result> {
+		private final int number;
+		private final String message;
+
+		InvalidTask(int number, String message) {
+			this.number = number;
+			this.message = message;
+		}
+
+		@Override
+		public Result call() {
+			return new Result(number, Status.INVALID, message, -1);
+		}
+	}
+
+	/**
+	 * The number of puzzles of each {@link Status}, the throughput and the
+	 * distribution of the time taken to solve a puzzle.
+	 */
+	public static class Report {
+		private final int[] counts = new int[Status.values().length];
+		private long[] latencies = new long[1024];
+		private int numSolved = 0;
+		private long elapsedNanos;
+
+		void add(Result result) {
+			counts[result.status.ordinal()]++;
+			if (result.nanos < 0)
+				return;
+			if (numSolved == latencies.length)
+				latencies = Arrays.copyOf(latencies, numSolved * 2);
+			latencies[numSolved++] = result.nanos;
+		}
+
+		void finish(long elapsedNanos) {
+			this.elapsedNanos = elapsedNanos;
+			Arrays.sort(latencies, 0, numSolved);
+		}
+
+		public int getCount(Status status) {
+			return counts[status.ordinal()];
+		}
+
+		public int getTotal() {
+			int total = 0;
+			for (int count : counts)
+				total += count;
+			return total;
+		}
+
+		public double getPuzzlesPerSecond() {
+			return elapsedNanos == 0 ? 0 : getTotal() * 1e9 / elapsedNanos;
+		}
+
+		/**
+		 * @param fraction E.g. 0.99 for the 99th percentile.
+		 * @return The latency of the given percentile by the nearest rank
+		 * method, in nanoseconds, or 0 if no puzzle was solved.
+		 */
+		public long getLatencyPercentile(double fraction) {
+			if (numSolved == 0)
+				return 0;
+			int rank = (int) Math.ceil(fraction * numSolved);
+			return latencies[Math.max(rank, 1) - 1];
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder report = new StringBuilder();
+			report.append(getTotal()).append(" puzzles in ")
+				.append(String.format("%.3f", elapsedNanos / 1e9)).append(" s (")
+				.append(String.format("%.1f", getPuzzlesPerSecond())).append(" puzzles/sec)\n");
+			for (Status status : Status.values())
+				report.append(status).append(": ").append(getCount(status)).append("\n");
+			report.append(String.format("Latency p50 %.3f ms, p99 %.3f ms, max %.3f ms",
+					getLatencyPercentile(0.5) / 1e6, getLatencyPercentile(0.99) / 1e6,
+					getLatencyPercentile(1.0) / 1e6));
+			return report.toString();
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		int cacheSize = 0;
+		boolean saveFormat = false;
+		int argIndex = 0;
+		while (args.length - argIndex > 2) {
+			if (args[argIndex].equals("-saveformat")) {
+				saveFormat = true;
+				argIndex++;
+				continue;
+			}
+			if (args[argIndex].equals("-threads"))
+				numThreads = Integer.parseInt(args[argIndex + 1]);
+			else if (args[argIndex].equals("-cache"))
+				cacheSize = Integer.parseInt(args[argIndex + 1]);
+			else
+				break;
+			argIndex += 2;
+		}
+		if (args.length - argIndex != 2 || numThreads <= 0 || cacheSize < 0) {
+			System.err.println("Usage: BatchSolver [-threads N] [-cache N] [-saveformat] <puzzle file> <result file>");
+			System.err.println("  -cache N     Keep the solutions of the last N distinct puzzles,"
+					+ " up to relabelling and reordering");
+			System.err.println("  -saveformat  Every puzzle is in the save format, and is parsed"
+					+ " straight from the bytes of the file");
+			System.exit(1);
+		}
+
+		SaveFormatReader saveFormatIn = null;
+		GridReader gridIn = null;
+		if (saveFormat)
+			saveFormatIn = SaveFormatReader.open(new File(args[argIndex]));
+		else
+			gridIn = new GridReader(new InputStreamReader(new FileInputStream(args[argIndex]), UTF_8));
+		Closeable in = saveFormat ? saveFormatIn : gridIn;
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(args[argIndex + 1]), UTF_8));
+		try {
+			BatchSolver solver = new BatchSolver(numThreads);
+			SolutionCache cache = cacheSize > 0 ? new SolutionCache(cacheSize) : null;
+			solver.setCache(cache);
+			Report report = saveFormat ? solver.run(saveFormatIn, out) : solver.run(gridIn, out);
+			System.out.println(report);
+			if (cache != null)
+				System.out.println(cache);
+		} finally {
+			in.close();
+			out.close();
+		}
+	}
+
+}
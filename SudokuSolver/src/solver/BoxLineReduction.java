@@ -0,0 +1,58 @@
+package solver;
+
+import sudoku.Box;
+import sudoku.Cell;
+import sudoku.Element;
+import sudoku.Grid;
+import sudoku.Line;
+
+/**
+ * Box/line reduction: if all the {@link Cell}s of a row or column where an
+ * {@link Element} fits lie in the same {@link Box}, the element must go
+ * somewhere on that line within the box, and can be ruled out for the rest of
+ * the box.
+ */
+public class BoxLineReduction implements Strategy {
+
+	@Override
+	public boolean apply(Grid grid) {
+		for (int i = 0; i < grid.numElements; i++)
+			if (applyTo(grid, grid.getRow(i)) || applyTo(grid, grid.getColumn(i)))
+				return true;
+		return false;
+	}
+
+	private boolean applyTo(Grid grid, Line line) {
+		if (line.isFull())
+			return false;
+		for (Element elem : grid.elements) {
+			if (line.isFilledIn(elem))
+				continue;
+			int boxIndex = -1;
+			boolean sameBox = true;
+			for (Cell cell : line) {
+				if (!cell.isPossible(elem))
+					continue;
+				int cellBox = grid.dimensions.cellCoordToBoxIndex(cell.getCoord());
+				if (boxIndex < 0)
+					boxIndex = cellBox;
+				else if (cellBox != boxIndex) {
+					sameBox = false;
+					break;
+				}
+			}
+			// If the element fits nowhere, the singles will notice
+			if (boxIndex < 0 || !sameBox)
+				continue;
+			if (PointingPairs.eliminateOutside(grid, grid.getBox(boxIndex), line, elem))
+				return true;
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return "BoxLineReduction";
+	}
+
+}
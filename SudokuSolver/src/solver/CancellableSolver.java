@@ -0,0 +1,27 @@
+package solver;
+
+import java.util.List;
+
+import sudoku.Grid;
+
+/**
+ * A solver of a single {@link Grid} whose search can be stopped from another
+ * thread, so that it can be raced against others by a
+ * {@link PortfolioSolver}.
+ */
+public interface CancellableSolver {
+
+	/**
+	 * @param limit The search stops once this many solutions have been found.
+	 * @return Up to limit solutions of the grid, or those found before the
+	 * search was cancelled.
+	 */
+	List<Grid> findSolutions(int limit);
+
+	/**
+	 * Stop the search in progress, and every later one, as soon as possible.
+	 * May be called from any thread.
+	 */
+	void cancel();
+
+}
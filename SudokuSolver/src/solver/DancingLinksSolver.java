@@ -0,0 +1,348 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import sudoku.Cell;
+import sudoku.Element;
+import sudoku.Grid;
+import sudoku.Section;
+import sudoku.SizeInfo;
+import util.Coord;
+
+/**
+ * Solves a {@link Grid} as an exact cover problem, using Knuth's Dancing Links
+ * implementation of Algorithm X.
+ *
+ * Every (cell, element) pair is a row of the matrix. The columns are the
+ * constraints that every {@link Cell} holds exactly one element, and that
+ * every {@link Section} of the grid (rows, columns, boxes and any other
+ * sections) holds each element exactly once. Filled cells only get the row of
+ * their own value, and unfilled cells only get rows for their currently
+ * possible elements.
+ *
+ * The links of the matrix are kept in preallocated int arrays rather than
+ * node objects, and the search is iterative, so its depth is not limited by
+ * the call stack.
+ */
+public class DancingLinksSolver implements CancellableSolver {
+
+	private static final int ROOT = 0;
+
+	private final Grid original;
+	private final int numElements;
+	private final int numCells;
+	private final int numColumns;
+	private final int numRows;
+
+	// Node links. Nodes 1..numColumns are the column headers.
+	private int[] left, right, up, down, column, row;
+	// Number of nodes in each column, indexed by the column's header node
+	private int[] size;
+	// The cell index and element ordinal of each matrix row
+	private int[] rowCell, rowElem;
+	// The chosen node at each level of the search
+	private int[] chosen;
+	private int numNodes;
+	private SolveStatistics statistics = null;
+	// Set by another thread to stop this search and every later one
+	private volatile boolean cancelled = false;
+
+	/**
+	 * @param grid The grid to solve. It is not modified by the solver.
+	 */
+	public DancingLinksSolver(Grid grid) {
+		this.original = new Grid(grid);
+		this.numElements = grid.numElements;
+		this.numCells = grid.dimensions.cellsPerGrid.product();
+		int numSections = 0;
+		for (List<? extends Section> sections : grid.allSections)
+			numSections += sections.size();
+		this.numColumns = numCells + numSections * numElements;
+
+		int rows = 0;
+		for (Cell cell : grid)
+			rows += cell.isFilled() ? 1 : cell.getNumPossible();
+		this.numRows = rows;
+	}
+
+	/**
+	 * @return The first solution found, or null if the grid has none.
+	 */
+	public Grid solve() {
+		List<Grid> solutions = findSolutions(1);
+		return solutions.isEmpty() ? null : solutions.get(0);
+	}
+
+	/**
+	 * @param limit The search stops once this many solutions have been found.
+	 * @return Up to limit solutions of the grid.
+	 */
+	@Override
+	public List<Grid> findSolutions(int limit) {
+		final List<Grid> solutions = new ArrayList<Grid>();
+		search(limit, new SolutionConsumer() {
+			@Override
+			public boolean accept(Grid solution) {
+				solutions.add(solution);
+				return true;
+			}
+		});
+		return solutions;
+	}
+
+	/**
+	 * Pass every solution of the grid to a consumer as soon as it is found,
+	 * until the consumer stops the search.
+	 * @return The number of solutions passed to the consumer.
+	 */
+	public int forEachSolution(SolutionConsumer consumer) {
+		return search(SudokuSolver.NO_LIMIT, consumer);
+	}
+
+	/**
+	 * @param limit The counting stops once this many solutions have been found.
+	 * @return The number of solutions of the grid, at most limit.
+	 */
+	public int countSolutions(int limit) {
+		return search(limit, null);
+	}
+
+	/**
+	 * @return true iff the grid has exactly one solution.
+	 */
+	public boolean hasUniqueSolution() {
+		return countSolutions(2) == 1;
+	}
+
+	/**
+	 * Stop the search in progress, and every later one, as soon as possible.
+	 * The search returns the solutions it found so far. May be called from
+	 * any thread.
+	 */
+	@Override
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * @return The statistics of the last search, or null if there has been
+	 * none. Every row tried counts as a node, and as a guess if its column
+	 * had other rows; every column whose rows have all been tried counts as a
+	 * backtrack.
+	 */
+	public SolveStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Run Algorithm X on a freshly built matrix.
+	 * @param consumer If not null, every solution found is passed to it.
+	 * @return The number of solutions found, at most limit.
+	 */
+	private int search(int limit, SolutionConsumer consumer) {
+		statistics = new SolveStatistics();
+		if (limit <= 0 || cancelled)
+			return 0;
+		long start = System.nanoTime();
+		try {
+			return search(limit, consumer, statistics);
+		} finally {
+			statistics.wallNanos = System.nanoTime() - start;
+			SolverStatistics.getInstance().record(statistics);
+		}
+	}
+
+	private int search(int limit, SolutionConsumer consumer, SolveStatistics statistics) {
+		buildMatrix();
+
+		int found = 0;
+		int level = 0;
+		int col = 0;
+		boolean descending = true;
+		while (true) {
+			if (cancelled)
+				return found;
+			if (descending) {
+				if (right[ROOT] == ROOT) {
+					found++;
+					if (consumer != null && !consumer.accept(toGrid(level)))
+						return found;
+					if (found >= limit)
+						return found;
+					descending = false;
+					continue;
+				}
+				col = chooseColumn();
+				cover(col);
+				chosen[level] = down[col];
+			} else {
+				// Backtrack out of the current level
+				if (level == 0)
+					return found;
+				level--;
+				int r = chosen[level];
+				col = column[r];
+				for (int j = left[r]; j != r; j = left[j])
+					uncover(column[j]);
+				chosen[level] = down[r];
+			}
+
+			int r = chosen[level];
+			if (r == col) {
+				// Every row of the column has been tried
+				uncover(col);
+				statistics.backtracks++;
+				descending = false;
+				continue;
+			}
+			statistics.nodesCreated++;
+			if (size[col] > 1)
+				statistics.guesses++;
+			for (int j = right[r]; j != r; j = right[j])
+				cover(column[j]);
+			level++;
+			statistics.reachedDepth(level);
+			descending = true;
+		}
+	}
+
+	// Knuth's S heuristic: the column with the fewest remaining rows.
+	private int chooseColumn() {
+		int best = right[ROOT];
+		for (int c = right[best]; c != ROOT && size[best] > 1; c = right[c])
+			if (size[c] < size[best])
+				best = c;
+		return best;
+	}
+
+	private void cover(int col) {
+		right[left[col]] = right[col];
+		left[right[col]] = left[col];
+		for (int i = down[col]; i != col; i = down[i])
+			for (int j = right[i]; j != i; j = right[j]) {
+				down[up[j]] = down[j];
+				up[down[j]] = up[j];
+				size[column[j]]--;
+			}
+	}
+
+	private void uncover(int col) {
+		for (int i = up[col]; i != col; i = up[i])
+			for (int j = left[i]; j != i; j = left[j]) {
+				size[column[j]]++;
+				down[up[j]] = j;
+				up[down[j]] = j;
+			}
+		right[left[col]] = col;
+		left[right[col]] = col;
+	}
+
+	private void buildMatrix() {
+		SizeInfo dimensions = original.dimensions;
+
+		// The section columns of each cell
+		int[][] cellSections = new int[numCells][];
+		int[] numCellSections = new int[numCells];
+		for (int i = 0; i < numCells; i++)
+			cellSections[i] = new int[4];
+		int sectionIndex = 0;
+		for (List<? extends Section> sections : original.allSections)
+			for (Section section : sections) {
+				for (Cell cell : section) {
+					int cellIndex = dimensions.cellCoordToCellIndex(cell.getCoord());
+					if (numCellSections[cellIndex] == cellSections[cellIndex].length)
+						cellSections[cellIndex] = Arrays.copyOf(
+								cellSections[cellIndex], 2 * numCellSections[cellIndex]);
+					cellSections[cellIndex][numCellSections[cellIndex]++] = sectionIndex;
+				}
+				sectionIndex++;
+			}
+
+		int capacity = 1 + numColumns;
+		for (Cell cell : original) {
+			int cellIndex = dimensions.cellCoordToCellIndex(cell.getCoord());
+			int perRow = 1 + numCellSections[cellIndex];
+			capacity += perRow * (cell.isFilled() ? 1 : cell.getNumPossible());
+		}
+		left = new int[capacity];
+		right = new int[capacity];
+		up = new int[capacity];
+		down = new int[capacity];
+		column = new int[capacity];
+		row = new int[capacity];
+		size = new int[1 + numColumns];
+		rowCell = new int[numRows];
+		rowElem = new int[numRows];
+		chosen = new int[numCells + 1];
+
+		// Header row: root followed by one header per column, in a circular list
+		for (int c = 0; c <= numColumns; c++) {
+			left[c] = c == 0 ? numColumns : c - 1;
+			right[c] = c == numColumns ? 0 : c + 1;
+			up[c] = c;
+			down[c] = c;
+			column[c] = c;
+		}
+		numNodes = 1 + numColumns;
+
+		int rowIndex = 0;
+		for (Cell cell : original) {
+			int cellIndex = dimensions.cellCoordToCellIndex(cell.getCoord());
+			for (int e = 0; e < numElements; e++) {
+				Element elem = original.elements.getElement(e);
+				boolean eligible = cell.isFilled() ? elem.equals(cell.getValue())
+												   : cell.isPossible(elem);
+				if (!eligible)
+					continue;
+				rowCell[rowIndex] = cellIndex;
+				rowElem[rowIndex] = e;
+				int first = appendNode(1 + cellIndex, rowIndex, -1);
+				for (int s = 0; s < numCellSections[cellIndex]; s++)
+					appendNode(1 + numCells + cellSections[cellIndex][s] * numElements + e,
+							   rowIndex, first);
+				rowIndex++;
+			}
+		}
+	}
+
+	/**
+	 * Append a node to the bottom of a column, and to the end of a row.
+	 * @param first The first node of the row, or -1 if this node starts it.
+	 * @return The index of the new node.
+	 */
+	private int appendNode(int col, int rowIndex, int first) {
+		int node = numNodes++;
+		column[node] = col;
+		row[node] = rowIndex;
+		up[node] = up[col];
+		down[node] = col;
+		down[up[col]] = node;
+		up[col] = node;
+		size[col]++;
+		if (first < 0) {
+			left[node] = node;
+			right[node] = node;
+		} else {
+			left[node] = left[first];
+			right[node] = first;
+			right[left[first]] = node;
+			left[first] = node;
+		}
+		return node;
+	}
+
+	private Grid toGrid(int depth) {
+		Grid solution = new Grid(original);
+		SizeInfo dimensions = original.dimensions;
+		for (int level = 0; level < depth; level++) {
+			int r = row[chosen[level]];
+			Coord coord = dimensions.cellIndexToCellCoord(rowCell[r]);
+			if (!solution.getCell(coord).isFilled())
+				solution.set(coord, original.elements.getElement(rowElem[r]));
+		}
+		return solution;
+	}
+
+}
@@ -0,0 +1,120 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import sudoku.CandidateSet;
+import sudoku.Cell;
+import sudoku.Element;
+import sudoku.Grid;
+import sudoku.Section;
+
+/**
+ * Hidden pairs, triples and quads: if n {@link Element}s of a {@link Section}
+ * only fit in n of its {@link Cell}s between them, those cells must hold those
+ * elements, and every other element can be ruled out for them.
+ */
+public class HiddenSubsets implements Strategy {
+
+	private final int size;
+
+	/**
+	 * @param size The number of elements in a subset, e.g. 2 for hidden pairs.
+	 */
+	public HiddenSubsets(int size) {
+		assert (size >= 2);
+		this.size = size;
+	}
+
+	@Override
+	public boolean apply(Grid grid) throws NoSolutionException {
+		for (List<? extends Section> sectionCollection : grid.allSections)
+			for (Section section : sectionCollection)
+				if (section.getNumUnfilled() > size && applyTo(grid, section))
+					return true;
+		return false;
+	}
+
+	private boolean applyTo(Grid grid, Section section) throws NoSolutionException {
+		List<Cell> cells = new ArrayList<Cell>(grid.numElements);
+		for (Cell cell : section)
+			cells.add(cell);
+
+		// The positions within the section where each element fits, for the
+		// elements fitting in at most size cells
+		List<Element> candidates = new ArrayList<Element>();
+		List<CandidateSet> positions = new ArrayList<CandidateSet>();
+		for (Element elem : grid.elements) {
+			if (section.isFilledIn(elem))
+				continue;
+			CandidateSet fits = CandidateSet.create(grid.numElements);
+			for (int i = 0; i < cells.size(); i++)
+				if (cells.get(i).isPossible(elem))
+					fits.add(i);
+			if (fits.isEmpty())
+				// The element fits nowhere in a section, the grid is unsolvable
+				throw NoSolutionException.INSTANCE;
+			if (fits.size() <= size) {
+				candidates.add(elem);
+				positions.add(fits);
+			}
+		}
+		if (candidates.size() < size)
+			return false;
+
+		Element[] subset = new Element[size];
+		CandidateSet[] unions = new CandidateSet[size + 1];
+		for (int i = 0; i <= size; i++)
+			unions[i] = CandidateSet.create(grid.numElements);
+		return search(grid, section, cells, candidates, positions, 0, 0, subset, unions);
+	}
+
+	/**
+	 * Choose the elements of the subset one at a time, keeping the union of
+	 * their positions in unions[depth], and abandon any partial subset whose
+	 * union is already too large.
+	 */
+	private boolean search(Grid grid, Section section, List<Cell> cells,
+			List<Element> candidates, List<CandidateSet> positions,
+			int from, int depth, Element[] subset, CandidateSet[] unions)
+			throws NoSolutionException {
+		if (depth == size)
+			return eliminate(grid, section, cells, subset, unions[depth]);
+		for (int i = from; i <= candidates.size() - (size - depth); i++) {
+			CandidateSet union = unions[depth + 1];
+			union.copyFrom(positions.get(i));
+			union.addAll(unions[depth]);
+			if (union.size() > size)
+				continue;
+			subset[depth] = candidates.get(i);
+			if (search(grid, section, cells, candidates, positions, i + 1, depth + 1, subset, unions))
+				return true;
+		}
+		return false;
+	}
+
+	private boolean eliminate(Grid grid, Section section, List<Cell> cells,
+			Element[] subset, CandidateSet union) throws NoSolutionException {
+		if (union.size() < size)
+			// More elements than there are cells left to put them in
+			throw NoSolutionException.INSTANCE;
+		boolean eliminated = false;
+		for (int i = union.first(); i >= 0; i = union.next(i + 1)) {
+			Cell cell = cells.get(i);
+			elementLoop:
+			for (Element elem : cell.getAllPossible()) {
+				for (Element member : subset)
+					if (member == elem)
+						continue elementLoop;
+				eliminated |= grid.eliminate(cell.getCoord(), elem);
+			}
+		}
+		return eliminated;
+	}
+
+	@Override
+	public String toString() {
+		return "HiddenSubsets [size=" + size + "]";
+	}
+
+}
@@ -0,0 +1,103 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import sudoku.CandidateSet;
+import sudoku.Cell;
+import sudoku.Element;
+import sudoku.Grid;
+import sudoku.Section;
+
+/**
+ * Naked pairs, triples and quads: if n unfilled {@link Cell}s of a
+ * {@link Section} only have n possible {@link Element}s between them, those
+ * elements must go in those cells, and can be ruled out for every other cell
+ * of the section.
+ */
+public class NakedSubsets implements Strategy {
+
+	private final int size;
+
+	/**
+	 * @param size The number of cells in a subset, e.g. 2 for naked pairs.
+	 */
+	public NakedSubsets(int size) {
+		assert (size >= 2);
+		this.size = size;
+	}
+
+	@Override
+	public boolean apply(Grid grid) throws NoSolutionException {
+		for (List<? extends Section> sectionCollection : grid.allSections)
+			for (Section section : sectionCollection)
+				if (section.getNumUnfilled() > size && applyTo(grid, section))
+					return true;
+		return false;
+	}
+
+	private boolean applyTo(Grid grid, Section section) throws NoSolutionException {
+		// Only cells with at most size possibilities can be part of a subset
+		List<Cell> candidates = new ArrayList<Cell>();
+		for (Cell cell : section)
+			if (!cell.isFilled() && cell.getNumPossible() <= size)
+				candidates.add(cell);
+		if (candidates.size() < size)
+			return false;
+
+		Cell[] subset = new Cell[size];
+		CandidateSet[] unions = new CandidateSet[size + 1];
+		for (int i = 0; i <= size; i++)
+			unions[i] = CandidateSet.create(grid.numElements);
+		return search(grid, section, candidates, 0, 0, subset, unions);
+	}
+
+	/**
+	 * Choose the cells of the subset one at a time, keeping the union of their
+	 * possibilities in unions[depth], and abandon any partial subset whose
+	 * union is already too large.
+	 */
+	private boolean search(Grid grid, Section section, List<Cell> candidates,
+			int from, int depth, Cell[] subset, CandidateSet[] unions)
+			throws NoSolutionException {
+		if (depth == size)
+			return eliminate(grid, section, subset, unions[depth]);
+		for (int i = from; i <= candidates.size() - (size - depth); i++) {
+			Cell cell = candidates.get(i);
+			CandidateSet union = unions[depth + 1];
+			cell.getAllPossible(union);
+			union.addAll(unions[depth]);
+			if (union.size() > size)
+				continue;
+			subset[depth] = cell;
+			if (search(grid, section, candidates, i + 1, depth + 1, subset, unions))
+				return true;
+		}
+		return false;
+	}
+
+	private boolean eliminate(Grid grid, Section section, Cell[] subset,
+			CandidateSet union) throws NoSolutionException {
+		if (union.size() < size)
+			// More cells than there are elements left to put in them
+			throw NoSolutionException.INSTANCE;
+		boolean eliminated = false;
+		cellLoop:
+		for (Cell cell : section) {
+			if (cell.isFilled())
+				continue;
+			for (Cell member : subset)
+				if (member == cell)
+					continue cellLoop;
+			for (int i = union.first(); i >= 0; i = union.next(i + 1))
+				eliminated |= grid.eliminate(cell.getCoord(), grid.elements.getElement(i));
+		}
+		return eliminated;
+	}
+
+	@Override
+	public String toString() {
+		return "NakedSubsets [size=" + size + "]";
+	}
+
+}
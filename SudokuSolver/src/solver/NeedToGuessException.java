@@ -1,7 +0,0 @@
-package solver;
-
-public class NeedToGuessException extends Exception {
-
-	private static final long serialVersionUID = 150305746437159157L;
-
-}
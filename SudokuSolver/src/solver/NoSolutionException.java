@@ -1,9 +1,17 @@
 package solver;
 
+/**
+ * Thrown by a {@link Strategy} which shows a grid to have no solution.
+ * Dead ends are the most common event of a search, so the exception carries
+ * no message or stack trace, and the shared {@link #INSTANCE} is thrown
+ * rather than a new one.
+ */
 public class NoSolutionException extends Exception {
 
-	public NoSolutionException(String string) {
-		super(string);
+	public static final NoSolutionException INSTANCE = new NoSolutionException();
+
+	private NoSolutionException() {
+		super(null, null, false, false);
 	}
 
 	private static final long serialVersionUID = 490827257954490588L;
@@ -0,0 +1,340 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import sudoku.Cell;
+import sudoku.Element;
+import sudoku.Grid;
+import sudoku.Trail;
+import util.Coord;
+
+/**
+ * Explores the guess tree of a {@link Grid} in parallel on a
+ * {@link ForkJoinPool}.
+ *
+ * Near the top of the tree, every option of a guess becomes its own
+ * {@link ForkJoinTask} working on a copy of the grid, so idle workers can steal
+ * branches. Further down, or when the pool already has enough queued work,
+ * branches are explored sequentially in place using a {@link Trail}, like
+ * {@link SudokuSolver.SearchMode#TRAIL}.
+ */
+public class ParallelSolver {
+
+	/**
+	 * Branches are never forked deeper than this many guesses below the root.
+	 */
+	public static final int DEFAULT_MAX_SPLIT_DEPTH = 16;
+	/**
+	 * Grids with fewer unfilled cells than this are searched sequentially,
+	 * since the cost of copying them outweighs the work in the subtree.
+	 */
+	public static final int DEFAULT_MIN_UNFILLED_TO_SPLIT = 20;
+	// Stop forking while the current worker has more queued tasks than this
+	private static final int SURPLUS_TASK_THRESHOLD = 3;
+
+	private static ForkJoinPool defaultPool;
+
+	private final Grid original;
+	private final ForkJoinPool pool;
+	private int maxSplitDepth = DEFAULT_MAX_SPLIT_DEPTH;
+	private int minUnfilledToSplit = DEFAULT_MIN_UNFILLED_TO_SPLIT;
+	private StrategyPipeline strategies = StrategyPipeline.createFull();
+
+	/**
+	 * Receives the solutions found by all workers, one at a time.
+	 */
+	private SolutionConsumer consumer = null;
+	private int limit = SudokuSolver.NO_LIMIT;
+	// Guarded by this
+	private int found = 0;
+	private volatile boolean stopped = false;
+	/**
+	 * The statistics of the last search, which every task adds its own
+	 * counters to when it finishes.
+	 */
+	private SolveStatistics statistics = null;
+
+	/**
+	 * Solve on a pool shared by all ParallelSolvers, with one worker per
+	 * available processor.
+	 */
+	public ParallelSolver(Grid grid) {
+		this(grid, getDefaultPool());
+	}
+
+	public ParallelSolver(Grid grid, ForkJoinPool pool) {
+		this.original = new Grid(grid);
+		this.pool = pool;
+	}
+
+	private static synchronized ForkJoinPool getDefaultPool() {
+		if (defaultPool == null)
+			defaultPool = new ForkJoinPool();
+		return defaultPool;
+	}
+
+	public void setMaxSplitDepth(int maxSplitDepth) {
+		this.maxSplitDepth = maxSplitDepth;
+	}
+
+	public void setMinUnfilledToSplit(int minUnfilledToSplit) {
+		this.minUnfilledToSplit = minUnfilledToSplit;
+	}
+
+	/**
+	 * Set the deduction strategies applied before every guess. The pipeline is
+	 * shared by all workers.
+	 */
+	public void setStrategyPipeline(StrategyPipeline strategies) {
+		this.strategies = strategies;
+	}
+
+	/**
+	 * @return One of the solutions of the grid, or null if it has none.
+	 */
+	public Grid solve() {
+		List<Grid> first = findSolutions(1);
+		return first.isEmpty() ? null : first.get(0);
+	}
+
+	/**
+	 * @return All the solutions of the grid, in no particular order.
+	 */
+	public List<Grid> solveAll() {
+		return findSolutions(SudokuSolver.NO_LIMIT);
+	}
+
+	/**
+	 * @param limit The search stops once this many solutions have been found.
+	 * @return Up to limit solutions of the grid, in no particular order.
+	 */
+	public List<Grid> findSolutions(int limit) {
+		final List<Grid> solutions = new ArrayList<Grid>();
+		search(new SolutionConsumer() {
+			@Override
+			public boolean accept(Grid solution) {
+				solutions.add(new Grid(solution));
+				return true;
+			}
+		}, limit);
+		return solutions;
+	}
+
+	/**
+	 * Pass every solution of the grid to a consumer as soon as it is found,
+	 * until the consumer stops the search. The consumer is called by the
+	 * workers, but never by two at the same time.
+	 * @return The number of solutions passed to the consumer.
+	 */
+	public int forEachSolution(SolutionConsumer consumer) {
+		return search(consumer, SudokuSolver.NO_LIMIT);
+	}
+
+	private int search(SolutionConsumer consumer, int limit) {
+		synchronized (this) {
+			this.consumer = consumer;
+			this.limit = limit;
+			this.found = 0;
+			this.stopped = limit <= 0;
+		}
+		this.statistics = new SolveStatistics(strategies);
+		try {
+			if (!stopped) {
+				long start = System.nanoTime();
+				try {
+					pool.invoke(new GuessTask(new Grid(original), 0));
+				} finally {
+					// Also if the consumer threw
+					statistics.wallNanos = System.nanoTime() - start;
+					SolverStatistics.getInstance().record(statistics);
+				}
+			}
+			synchronized (this) {
+				return found;
+			}
+		} finally {
+			synchronized (this) {
+				this.consumer = null;
+			}
+		}
+	}
+
+	/**
+	 * @return The statistics of the last search, added up over all workers,
+	 * or null if there has been none.
+	 */
+	public SolveStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * @return The number of solutions of the grid.
+	 */
+	public int countSolutions() {
+		return countSolutions(SudokuSolver.NO_LIMIT);
+	}
+
+	/**
+	 * @param limit The counting stops once this many solutions have been found.
+	 * @return The number of solutions of the grid, at most limit.
+	 */
+	public int countSolutions(int limit) {
+		return search(new SolutionConsumer() {
+			@Override
+			public boolean accept(Grid solution) {
+				return true;
+			}
+		}, limit);
+	}
+
+	/**
+	 * @return true iff the grid has exactly one solution.
+	 */
+	public boolean hasUniqueSolution() {
+		return countSolutions(2) == 1;
+	}
+
+	private boolean isLimitReached() {
+		return stopped;
+	}
+
+	private synchronized void found(Grid solution) {
+		if (stopped)
+			return;
+		found++;
+		if (!consumer.accept(solution) || found >= limit)
+			stopped = true;
+	}
+
+	private class GuessTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 6317622305374880853L;
+
+		private final Grid grid;
+		private final int depth;
+		private SolveStatistics taskStatistics;
+
+		GuessTask(Grid grid, int depth) {
+			this.grid = grid;
+			this.depth = depth;
+		}
+
+		@Override
+		protected void compute() {
+			taskStatistics = new SolveStatistics(strategies);
+			Trail trail = new Trail(grid);
+			Propagator propagator = new Propagator(grid, taskStatistics);
+			explore(trail, propagator);
+			propagator.detach();
+			trail.detach();
+			statistics.merge(taskStatistics);
+		}
+
+		/**
+		 * Search the task's grid in place, like
+		 * {@link SudokuSolver.SearchMode#TRAIL}, with the guesses kept on a
+		 * {@link SearchStack} rather than the call stack. Wherever a guess
+		 * is worth splitting, its options are forked instead and the search
+		 * carries on once they are done.
+		 */
+		private void explore(Trail trail, Propagator propagator) {
+			if (isLimitReached())
+				return;
+			SearchStack stack = new SearchStack();
+			boolean consistent = deduce(propagator, depth);
+			while (true) {
+				if (consistent) {
+					int level = depth + stack.depth();
+					if (grid.getNumUnfilled() == 0) {
+						if (!grid.isSolved())
+							taskStatistics.backtracks++;
+						else
+							found(grid);
+					} else {
+						Cell guessAt = SudokuSolver.findBestChoiceGuessableCell(grid);
+						if (shouldSplit(level))
+							split(guessAt, level);
+						else
+							stack.push(guessAt.getIndex(), trail.mark());
+					}
+				}
+
+				// Backtrack to the innermost guess with an option left to try
+				Element option = null;
+				while (!stack.isEmpty()) {
+					trail.undo(stack.mark());
+					if (!isLimitReached()) {
+						option = nextOption(stack);
+						if (option != null)
+							break;
+					}
+					stack.pop();
+				}
+				if (option == null)
+					return;
+
+				grid.set(grid.getCell(stack.cell()).getCoord(), option);
+				taskStatistics.guesses++;
+				consistent = deduce(propagator, depth + stack.depth());
+			}
+		}
+
+		/**
+		 * Fill in the grid as far as possible without guessing.
+		 * @return false iff the grid turned out to have no solution.
+		 */
+		private boolean deduce(Propagator propagator, int level) {
+			taskStatistics.nodesCreated++;
+			taskStatistics.reachedDepth(level);
+			if (strategies.run(grid, propagator, taskStatistics))
+				return true;
+			taskStatistics.backtracks++;
+			return false;
+		}
+
+		/**
+		 * @return The next untried option of the innermost guess, in
+		 * ascending order, or null if all have been tried.
+		 */
+		private Element nextOption(SearchStack stack) {
+			Cell cell = grid.getCell(stack.cell());
+			for (int i = stack.nextOption(); i < grid.numElements; i++) {
+				Element option = grid.elements.getElement(i);
+				if (cell.isPossible(option)) {
+					stack.setNextOption(i + 1);
+					return option;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Explore every option of a guess in its own task, on a copy of the
+		 * grid, and wait for them all.
+		 */
+		private void split(Cell guessAt, int level) {
+			Coord guessCoord = guessAt.getCoord();
+			List<Element> options = guessAt.getAllPossible();
+			List<GuessTask> children = new ArrayList<GuessTask>(options.size());
+			for (Element option : options) {
+				Grid child = new Grid(grid);
+				child.set(guessCoord, option);
+				children.add(new GuessTask(child, level + 1));
+				taskStatistics.guesses++;
+			}
+			invokeAll(children);
+		}
+
+		private boolean shouldSplit(int depth) {
+			return depth < maxSplitDepth
+				&& grid.getNumUnfilled() >= minUnfilledToSplit
+				&& getSurplusQueuedTaskCount() <= SURPLUS_TASK_THRESHOLD;
+		}
+
+	}
+
+}
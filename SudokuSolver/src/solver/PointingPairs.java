@@ -0,0 +1,73 @@
+package solver;
+
+import sudoku.Box;
+import sudoku.Cell;
+import sudoku.Element;
+import sudoku.Grid;
+import sudoku.Section;
+import util.Coord;
+
+/**
+ * Pointing pairs and triples: if all the {@link Cell}s of a {@link Box} where
+ * an {@link Element} fits lie on the same row or column, the element must go
+ * somewhere on that line within the box, and can be ruled out for the rest of
+ * the line.
+ */
+public class PointingPairs implements Strategy {
+
+	@Override
+	public boolean apply(Grid grid) {
+		for (int b = 0; b < grid.numElements; b++) {
+			Box box = grid.getBox(b);
+			if (box.isFull())
+				continue;
+			for (Element elem : grid.elements) {
+				if (box.isFilledIn(elem))
+					continue;
+				int row = -1, col = -1;
+				boolean sameRow = true, sameCol = true;
+				for (Cell cell : box) {
+					if (!cell.isPossible(elem))
+						continue;
+					Coord coord = cell.getCoord();
+					if (row < 0) {
+						row = coord.row;
+						col = coord.col;
+					} else {
+						sameRow &= coord.row == row;
+						sameCol &= coord.col == col;
+					}
+				}
+				// If the element fits nowhere, the singles will notice
+				if (row < 0)
+					continue;
+				boolean eliminated = false;
+				if (sameRow)
+					eliminated |= eliminateOutside(grid, grid.getRow(row), box, elem);
+				if (sameCol)
+					eliminated |= eliminateOutside(grid, grid.getColumn(col), box, elem);
+				if (eliminated)
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Rule out the element for the cells of a section which are not in another
+	 * section overlapping it.
+	 */
+	static boolean eliminateOutside(Grid grid, Section section, Section overlap, Element elem) {
+		boolean eliminated = false;
+		for (Cell cell : section)
+			if (!overlap.contains(cell.getCoord()))
+				eliminated |= grid.eliminate(cell.getCoord(), elem);
+		return eliminated;
+	}
+
+	@Override
+	public String toString() {
+		return "PointingPairs";
+	}
+
+}
@@ -0,0 +1,185 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import sudoku.Grid;
+
+/**
+ * Races several solvers of the same {@link Grid} against each other, each on
+ * its own thread, and returns the answer of the first to finish. The others
+ * are then cancelled, and give up at their next check.
+ *
+ * How long a backtracking search takes depends heavily on its guesses, and a
+ * puzzle which is pathological for one heuristic is often easy for another.
+ * Racing differently configured solvers bounds the time of a puzzle by that
+ * of its fastest configuration, which cuts the tail of the latency
+ * distribution at the cost of running several searches at once.
+ *
+ * The solvers stay cancelled, so a portfolio can only be raced once.
+ */
+public class PortfolioSolver {
+
+	private static ExecutorService defaultExecutor;
+
+	private final List<CancellableSolver> entrants;
+	private final ExecutorService executor;
+	private final AtomicBoolean raced = new AtomicBoolean();
+	private volatile CancellableSolver winner = null;
+
+	/**
+	 * Race on threads shared by all PortfolioSolvers, created as needed.
+	 * @param entrants Solvers of the same grid.
+	 */
+	public PortfolioSolver(List<? extends CancellableSolver> entrants) {
+		this(entrants, getDefaultExecutor());
+	}
+
+	/**
+	 * @param entrants Solvers of the same grid.
+	 * @param executor Runs the entrants. Those it cannot start before the race
+	 * is won return as soon as they do start.
+	 */
+	public PortfolioSolver(List<? extends CancellableSolver> entrants, ExecutorService executor) {
+		if (entrants.isEmpty())
+			throw new IllegalArgumentException("A portfolio needs at least one solver");
+		this.entrants = Collections.unmodifiableList(new ArrayList<CancellableSolver>(entrants));
+		this.executor = executor;
+	}
+
+	/**
+	 * @return A portfolio of numEntrants differently configured solvers of the
+	 * grid, in this order: a {@link SudokuSolver} in
+	 * {@link SudokuSolver.SearchMode#TRAIL} mode with the default heuristics,
+	 * a {@link DancingLinksSolver}, one guessing at the first cell with the
+	 * fewest possible elements in descending order, and the rest at random
+	 * cells in random order, with seeds 1, 2, ...
+	 */
+	public static PortfolioSolver create(Grid grid, int numEntrants) {
+		List<CancellableSolver> entrants = new ArrayList<CancellableSolver>(numEntrants);
+		for (int i = 0; i < numEntrants; i++) {
+			if (i == 1) {
+				entrants.add(new DancingLinksSolver(grid));
+				continue;
+			}
+			SudokuSolver solver = new SudokuSolver(grid, SudokuSolver.SearchMode.TRAIL);
+			if (i == 2) {
+				solver.setCellHeuristic(SudokuSolver.CellHeuristic.FEWEST_POSSIBLE);
+				solver.setValueOrder(SudokuSolver.ValueOrder.DESCENDING);
+			} else if (i > 2) {
+				solver.setCellHeuristic(SudokuSolver.CellHeuristic.RANDOM);
+				solver.setValueOrder(SudokuSolver.ValueOrder.RANDOM);
+				solver.setRandomSeed(i - 2);
+			}
+			entrants.add(solver);
+		}
+		return new PortfolioSolver(entrants);
+	}
+
+	private static synchronized ExecutorService getDefaultExecutor() {
+		if (defaultExecutor == null)
+			defaultExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable task) {
+					Thread thread = new Thread(task, "PortfolioSolver");
+					// Losers still winding down must not keep the JVM alive
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		return defaultExecutor;
+	}
+
+	public List<CancellableSolver> getEntrants() {
+		return entrants;
+	}
+
+	/**
+	 * @return The entrant which won the race, or null if it has not been run.
+	 */
+	public CancellableSolver getWinner() {
+		return winner;
+	}
+
+	/**
+	 * @return One of the solutions of the grid, or null if it has none.
+	 */
+	public Grid solve() {
+		List<Grid> first = findSolutions(1);
+		return first.isEmpty() ? null : first.get(0);
+	}
+
+	/**
+	 * @param limit The counting stops once this many solutions have been found.
+	 * @return The number of solutions of the grid, at most limit.
+	 */
+	public int countSolutions(int limit) {
+		return findSolutions(limit).size();
+	}
+
+	/**
+	 * @return true iff the grid has exactly one solution.
+	 */
+	public boolean hasUniqueSolution() {
+		return countSolutions(2) == 1;
+	}
+
+	/**
+	 * Race the entrants to find up to limit solutions of the grid, and cancel
+	 * the others as soon as one of them finishes. An entrant which fails
+	 * drops out of the race.
+	 * @param limit The search stops once this many solutions have been found.
+	 * @return The solutions found by the winner.
+	 */
+	public List<Grid> findSolutions(final int limit) {
+		if (!raced.compareAndSet(false, true))
+			throw new IllegalStateException("A portfolio can only be raced once");
+		CompletionService<Finish> race = new ExecutorCompletionService<Finish>(executor);
+		for (final CancellableSolver entrant : entrants)
+			race.submit(new Callable<Finish>() {
+				@Override
+				public Finish call() {
+					return new Finish(entrant, entrant.findSolutions(limit));
+				}
+			});
+		try {
+			Throwable failure = null;
+			for (int i = 0; i < entrants.size(); i++) {
+				try {
+					Finish finish = race.take().get();
+					winner = finish.entrant;
+					return finish.solutions;
+				} catch (ExecutionException e) {
+					failure = e.getCause();
+				}
+			}
+			throw new IllegalStateException("Every solver of the portfolio failed", failure);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while solving", e);
+		} finally {
+			for (CancellableSolver entrant : entrants)
+				entrant.cancel();
+		}
+	}
+
+	private static class Finish {
+		final CancellableSolver entrant;
+		final List<Grid> solutions;
+
+		Finish(CancellableSolver entrant, List<Grid> solutions) {
+			this.entrant = entrant;
+			this.solutions = solutions;
+		}
+	}
+
+}
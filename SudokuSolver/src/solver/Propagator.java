@@ -0,0 +1,198 @@
+package solver;
+
+import sudoku.Cell;
+import sudoku.Element;
+import sudoku.Grid;
+import sudoku.GridListener;
+import sudoku.Section;
+import sudoku.Topology;
+
+/**
+ * Fills in the naked and hidden singles of a {@link Grid}, driven by a work
+ * queue instead of rescanning the whole grid after every filled cell.
+ *
+ * The Propagator listens to the candidates removed from the grid's
+ * {@link Cell}s. Each removal queues the affected Cell (which may have become
+ * a naked single) and the (section, element) pair for every {@link Section}
+ * containing it (where the element may have become a hidden single).
+ * {@link #propagate()} then only revisits queued work until a fixpoint is
+ * reached. Sections are numbered by their {@link Topology} section id.
+ *
+ * A Propagator can be moved from grid to grid of the same Topology with
+ * {@link #attach}, so one serves a whole search.
+ */
+public class Propagator implements GridListener {
+
+	private final Topology topology;
+	private final SolveStatistics statistics;
+	private final int numElements;
+	private Grid grid;
+
+	// Queue of cell indices which may be naked singles
+	private final int[] cellQueue;
+	private final boolean[] cellQueued;
+	private int cellHead = 0, cellSize = 0;
+
+	// Queue of (section id * numElements + element ordinal) pairs which may
+	// be hidden singles
+	private final int[] pairQueue;
+	private final boolean[] pairQueued;
+	private int pairHead = 0, pairSize = 0;
+
+	/**
+	 * Create a Propagator and set it as the listener of the grid. All cells
+	 * and (section, element) pairs are initially queued.
+	 */
+	public Propagator(Grid grid) {
+		this(grid, new SolveStatistics());
+	}
+
+	/**
+	 * @param statistics Counts the singles filled in and the work done.
+	 */
+	public Propagator(Grid grid, SolveStatistics statistics) {
+		this.topology = grid.topology;
+		this.statistics = statistics;
+		this.numElements = grid.numElements;
+
+		this.cellQueue = new int[topology.numCells];
+		this.cellQueued = new boolean[topology.numCells];
+		this.pairQueue = new int[topology.numSections * numElements];
+		this.pairQueued = new boolean[topology.numSections * numElements];
+
+		attach(grid);
+		for (int i = 0; i < cellQueue.length; i++)
+			enqueueCell(i);
+		for (int p = 0; p < pairQueue.length; p++)
+			enqueuePair(p);
+	}
+
+	/**
+	 * Stop listening to the current grid, and listen to another one instead
+	 * with nothing queued, e.g. a copy of the current grid before a guess is
+	 * made in it. Only the candidates removed from then on are propagated, so
+	 * the grid must be at a fixpoint of the singles.
+	 */
+	public void attach(Grid grid) {
+		if (grid.topology != topology)
+			throw new IllegalArgumentException("The grid has a different topology");
+		if (this.grid != null)
+			this.grid.setListener(null);
+		clear();
+		this.grid = grid;
+		grid.setListener(this);
+	}
+
+	/**
+	 * Stop listening to the grid.
+	 */
+	public void detach() {
+		grid.setListener(null);
+	}
+
+	@Override
+	public void candidateRemoved(Cell cell, Element element) {
+		int cellIndex = cell.getIndex();
+		enqueueCell(cellIndex);
+		for (int s : topology.getCellSections(cellIndex))
+			enqueuePair(s * numElements + element.ordinal);
+	}
+
+	/**
+	 * Fill in naked and hidden singles until none are left.
+	 * @return false iff a cell has no possible elements left, or an element
+	 * fits nowhere in a section. The queues are then emptied.
+	 */
+	public boolean propagate() {
+		while (cellSize > 0 || pairSize > 0) {
+			statistics.propagationSteps++;
+			boolean consistent = cellSize > 0 ? fillNakedSingle(grid.getCell(pollCell())) : fillHiddenSingle(pollPair());
+			if (!consistent) {
+				clear();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return false iff the cell has no possible elements left.
+	 */
+	private boolean fillNakedSingle(Cell cell) {
+		if (cell.isFilled())
+			return true;
+		int numPossible = cell.getNumPossible();
+		if (numPossible == 0)
+			return false;
+		if (numPossible == 1) {
+			Element only = cell.getOnlyPossible();
+			Trace.record(Trace.Event.NAKED_SINGLE, cell.getIndex(), only.ordinal, 0);
+			grid.set(cell.getCoord(), only);
+			statistics.nakedSingles++;
+		}
+		return true;
+	}
+
+	/**
+	 * @return false iff the element fits nowhere in the section.
+	 */
+	private boolean fillHiddenSingle(int pair) {
+		Section section = grid.getSection(pair / numElements);
+		Element elem = grid.elements.getElement(pair % numElements);
+		if (section.isFilledIn(elem))
+			return true;
+		Cell possibleCell = null;
+		for (Cell cell : section) {
+			if (cell.isPossible(elem)) {
+				if (possibleCell != null)
+					return true;
+				possibleCell = cell;
+			}
+		}
+		if (possibleCell == null)
+			// The element fits nowhere in a section, the grid is unsolvable
+			return false;
+		Trace.record(Trace.Event.HIDDEN_SINGLE, possibleCell.getIndex(), elem.ordinal, pair / numElements);
+		grid.set(possibleCell.getCoord(), elem);
+		statistics.hiddenSingles++;
+		return true;
+	}
+
+	private void clear() {
+		while (cellSize > 0)
+			pollCell();
+		while (pairSize > 0)
+			pollPair();
+	}
+
+	private void enqueueCell(int cellIndex) {
+		if (cellQueued[cellIndex])
+			return;
+		cellQueued[cellIndex] = true;
+		cellQueue[(cellHead + cellSize++) % cellQueue.length] = cellIndex;
+	}
+
+	private int pollCell() {
+		int cellIndex = cellQueue[cellHead];
+		cellHead = (cellHead + 1) % cellQueue.length;
+		cellSize--;
+		cellQueued[cellIndex] = false;
+		return cellIndex;
+	}
+
+	private void enqueuePair(int pair) {
+		if (pairQueued[pair])
+			return;
+		pairQueued[pair] = true;
+		pairQueue[(pairHead + pairSize++) % pairQueue.length] = pair;
+	}
+
+	private int pollPair() {
+		int pair = pairQueue[pairHead];
+		pairHead = (pairHead + 1) % pairQueue.length;
+		pairSize--;
+		pairQueued[pair] = false;
+		return pair;
+	}
+
+}
@@ -0,0 +1,19 @@
+package solver;
+
+import sudoku.Grid;
+
+/**
+ * Receives the puzzles made by a {@link PuzzleGenerator}, one at a time, in the
+ * order of the attempts which made them.
+ */
+public interface PuzzleConsumer {
+
+	/**
+	 * @param puzzle A puzzle with exactly one solution. It is not used by the
+	 * generator afterwards.
+	 * @param solution The solution of the puzzle.
+	 * @return true to go on generating, false to stop.
+	 */
+	boolean accept(Grid puzzle, Grid solution);
+
+}
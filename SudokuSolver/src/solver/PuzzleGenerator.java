@@ -0,0 +1,333 @@
+package solver;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import sudoku.BinaryCorpusWriter;
+import sudoku.Element;
+import sudoku.ElementSet.CannotCreateElementSetException;
+import sudoku.Grid;
+import sudoku.GridReader;
+import util.Coord;
+import util.Dims;
+
+/**
+ * Generates puzzles with exactly one solution, on a pool of worker threads.
+ *
+ * Every attempt builds a random full solution, then takes away its clues in
+ * random order, one at a time or in pairs mirrored through the centre of the
+ * grid. A clue stays away only if the {@link DancingLinksSolver} finds no
+ * second solution without it. Attempts which end up with more clues than the
+ * maximum are rejected.
+ *
+ * Each attempt draws from its own random generator, seeded from the seed of
+ * the run and the number of the attempt, and the puzzles are passed on in
+ * attempt order, so a seed always gives the same puzzles whatever the number
+ * of threads.
+ */
+public class PuzzleGenerator {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	// How many attempts each worker may have queued ahead of the consumer
+	private static final int IN_FLIGHT_PER_THREAD = 4;
+	// Spreads the seeds of consecutive attempts over the whole range
+	private static final long SEED_INCREMENT = 0x9E3779B97F4A7C15L;
+
+	/**
+	 * The order in which clues are taken away.
+	 */
+	public enum Symmetry {
+		/**
+		 * One clue at a time.
+		 */
+		NONE,
+		/**
+		 * A clue and the one opposite it through the centre together, so the
+		 * puzzle looks the same turned upside down.
+		 */
+		ROTATIONAL
+	}
+
+	private final Grid empty;
+	private final int numThreads;
+	private Symmetry symmetry = Symmetry.NONE;
+	private int maxClues;
+
+	/**
+	 * @param empty A grid without any values filled in, with the dimensions
+	 * and elements of the puzzles to generate.
+	 */
+	public PuzzleGenerator(Grid empty, int numThreads) {
+		if (empty.getNumUnfilled() != empty.topology.numCells)
+			throw new IllegalArgumentException("The grid to generate puzzles on must be empty");
+		this.empty = new Grid(empty);
+		this.numThreads = numThreads;
+		this.maxClues = empty.topology.numCells;
+	}
+
+	public void setSymmetry(Symmetry symmetry) {
+		this.symmetry = symmetry;
+	}
+
+	/**
+	 * Reject puzzles with more clues than this. Defaults to no limit. A limit
+	 * too low for any puzzle to reach makes {@link #generate} run forever.
+	 */
+	public void setMaxClues(int maxClues) {
+		this.maxClues = maxClues;
+	}
+
+	/**
+	 * Generate puzzles until count of them have been accepted, or the
+	 * consumer stops. The consumer is called on the calling thread.
+	 * @return The number of puzzles passed to the consumer.
+	 */
+	public int generate(long seed, int count, PuzzleConsumer consumer) {
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		Queue<Future<Attempt>> inFlight = new ArrayDeque<Future<Attempt>>();
+		int accepted = 0;
+		long attempt = 0;
+		try {
+			while (accepted < count) {
+				while (inFlight.size() < numThreads * IN_FLIGHT_PER_THREAD)
+					inFlight.add(pool.submit(new AttemptTask(seed + attempt++ * SEED_INCREMENT)));
+				Attempt result = get(inFlight.poll());
+				if (result.numClues > maxClues)
+					continue;
+				accepted++;
+				if (!consumer.accept(result.puzzle, result.solution))
+					break;
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		return accepted;
+	}
+
+	private static Attempt get(Future<Attempt> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while generating", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Generator failed", e.getCause());
+		}
+	}
+
+	/**
+	 * @return A random full solution of the empty grid.
+	 */
+	Grid createSolution(Random random) {
+		Grid grid = new Grid(empty);
+		// Any arrangement of the elements in a single box is consistent
+		int[] boxCells = grid.topology.getSectionCells(grid.topology.boxId(0));
+		int[] order = shuffledIndices(grid.numElements, random);
+		for (int i = 0; i < boxCells.length; i++)
+			grid.set(grid.getCell(boxCells[i]).getCoord(), grid.elements.getElement(order[i]));
+		Grid filled = new DancingLinksSolver(grid).solve();
+
+		// Shuffling the bands of boxes, the rows within each band, the stacks
+		// of boxes and the columns within each stack keeps every section whole
+		Dims cellsPerBox = grid.dimensions.cellsPerBox;
+		int[] rows = shuffledGroups(cellsPerBox.height, cellsPerBox.width, random);
+		int[] cols = shuffledGroups(cellsPerBox.width, cellsPerBox.height, random);
+		Grid solution = new Grid(empty);
+		for (int r = 0; r < rows.length; r++)
+			for (int c = 0; c < cols.length; c++)
+				solution.set(new Coord(r, c), filled.getCell(rows[r], cols[c]).getValue());
+		return solution;
+	}
+
+	/**
+	 * @return A puzzle whose only solution is the given one.
+	 */
+	Grid removeClues(Grid solution, Random random) {
+		int numCells = solution.topology.numCells;
+		Element[] clues = new Element[numCells];
+		for (int i = 0; i < numCells; i++)
+			clues[i] = solution.getCell(i).getValue();
+
+		for (int cell : shuffledIndices(numCells, random)) {
+			if (clues[cell] == null)
+				continue;
+			int opposite = symmetry == Symmetry.ROTATIONAL ? numCells - 1 - cell : cell;
+			Element removed = clues[cell];
+			Element removedOpposite = clues[opposite];
+			clues[cell] = null;
+			clues[opposite] = null;
+			// Stops at the second solution
+			if (new DancingLinksSolver(toGrid(clues)).countSolutions(2) != 1) {
+				clues[cell] = removed;
+				clues[opposite] = removedOpposite;
+			}
+		}
+		return toGrid(clues);
+	}
+
+	private Grid toGrid(Element[] values) {
+		Grid grid = new Grid(empty);
+		for (int i = 0; i < values.length; i++)
+			if (values[i] != null)
+				grid.set(grid.getCell(i).getCoord(), values[i]);
+		return grid;
+	}
+
+	private static int[] shuffledIndices(int n, Random random) {
+		int[] indices = new int[n];
+		for (int i = 0; i < n; i++)
+			indices[i] = i;
+		for (int i = n - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = indices[i];
+			indices[i] = indices[j];
+			indices[j] = swap;
+		}
+		return indices;
+	}
+
+	/**
+	 * @return A permutation of numGroups * groupSize indices which keeps the
+	 * members of each group of consecutive indices together.
+	 */
+	private static int[] shuffledGroups(int groupSize, int numGroups, Random random) {
+		int[] permutation = new int[groupSize * numGroups];
+		int i = 0;
+		for (int group : shuffledIndices(numGroups, random))
+			for (int member : shuffledIndices(groupSize, random))
+				permutation[i++] = group * groupSize + member;
+		return permutation;
+	}
+
+	private static class Attempt {
+		final Grid puzzle;
+		final Grid solution;
+		final int numClues;
+
+		Attempt(Grid puzzle, Grid solution) {
+			this.puzzle = puzzle;
+			this.solution = solution;
+			this.numClues = puzzle.topology.numCells - puzzle.getNumUnfilled();
+		}
+	}
+
+	private class AttemptTask implements Callable<Attempt> {
+		private final long seed;
+
+		AttemptTask(long seed) {
+			this.seed = seed;
+		}
+
+		@Override
+		public Attempt call() {
+			Random random = new Random(seed);
+			Grid solution = createSolution(random);
+			return new Attempt(removeClues(solution, random), solution);
+		}
+	}
+
+	public static void main(String[] args) throws IOException, CannotCreateElementSetException {
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		long seed = System.nanoTime();
+		Dims cellsPerBox = new Dims(Grid.DEFAULT_COLS_PER_BOX, Grid.DEFAULT_ROWS_PER_BOX);
+		Symmetry symmetry = Symmetry.NONE;
+		boolean binary = false;
+		int maxClues = -1;
+		int argIndex = 0;
+		while (argIndex < args.length && args[argIndex].startsWith("-")) {
+			String option = args[argIndex++];
+			if (option.equals("-symmetric")) {
+				symmetry = Symmetry.ROTATIONAL;
+				continue;
+			}
+			if (option.equals("-binary")) {
+				binary = true;
+				continue;
+			}
+			if (argIndex == args.length)
+				usage();
+			String value = args[argIndex++];
+			if (option.equals("-threads")) {
+				numThreads = Integer.parseInt(value);
+			} else if (option.equals("-seed")) {
+				seed = Long.parseLong(value);
+			} else if (option.equals("-maxclues")) {
+				maxClues = Integer.parseInt(value);
+			} else if (option.equals("-box")) {
+				String[] size = value.split("x");
+				if (size.length != 2)
+					usage();
+				cellsPerBox = new Dims(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+			} else {
+				usage();
+			}
+		}
+		if (args.length - argIndex != 2 || numThreads <= 0
+				|| cellsPerBox.product() > GridReader.ONE_LINE_ELEMENTS.length())
+			usage();
+		int count = Integer.parseInt(args[argIndex]);
+
+		String[] elements = new String[cellsPerBox.product()];
+		for (int i = 0; i < elements.length; i++)
+			elements[i] = String.valueOf(GridReader.ONE_LINE_ELEMENTS.charAt(i));
+		Grid empty = new Grid(cellsPerBox, elements);
+		PuzzleGenerator generator = new PuzzleGenerator(empty, numThreads);
+		generator.setSymmetry(symmetry);
+		if (maxClues >= 0)
+			generator.setMaxClues(maxClues);
+
+		File file = new File(args[argIndex + 1]);
+		final BinaryCorpusWriter corpus = binary ? BinaryCorpusWriter.create(file, empty, true) : null;
+		final Writer text = binary ? null
+				: new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), UTF_8));
+		final Closeable out = binary ? corpus : text;
+		final IOException[] failure = new IOException[1];
+		long start = System.nanoTime();
+		try {
+			int generated = generator.generate(seed, count, new PuzzleConsumer() {
+				@Override
+				public boolean accept(Grid puzzle, Grid solution) {
+					try {
+						if (corpus != null)
+							corpus.write(puzzle, solution);
+						else
+							text.write(BatchSolver.toLine(puzzle) + "\n");
+						return true;
+					} catch (IOException e) {
+						failure[0] = e;
+						return false;
+					}
+				}
+			});
+			if (failure[0] != null)
+				throw failure[0];
+			System.out.println(String.format("Generated %d puzzles with seed %d in %.3f s",
+					generated, seed, (System.nanoTime() - start) / 1e9));
+		} finally {
+			out.close();
+		}
+	}
+
+	private static void usage() {
+		System.err.println("Usage: PuzzleGenerator [-threads N] [-seed S] [-box WxH] [-symmetric]"
+				+ " [-maxclues N] [-binary] <count> <puzzle file>");
+		System.err.println("  -binary  Write the puzzles and their solutions as a binary corpus,"
+				+ " rather than one puzzle per line");
+		System.exit(1);
+	}
+
+}
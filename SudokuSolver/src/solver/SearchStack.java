@@ -0,0 +1,65 @@
+package solver;
+
+import java.util.Arrays;
+
+import sudoku.Trail;
+
+/**
+ * The explicit stack of an iterative in-place search, holding one compact
+ * frame per guess: the index of the guessed cell, the ordinal of the next
+ * option to try there, and the {@link Trail} mark to undo to before trying it.
+ *
+ * The frames live in parallel int arrays, so the memory used only grows with
+ * the current guess depth.
+ */
+class SearchStack {
+
+	private int[] cells = new int[64];
+	private int[] nextOptions = new int[64];
+	private int[] marks = new int[64];
+	private int depth = 0;
+
+	/**
+	 * Push a frame for a new guess, whose first option is tried next.
+	 */
+	void push(int cellIndex, int mark) {
+		if (depth == cells.length) {
+			cells = Arrays.copyOf(cells, depth * 2);
+			nextOptions = Arrays.copyOf(nextOptions, depth * 2);
+			marks = Arrays.copyOf(marks, depth * 2);
+		}
+		cells[depth] = cellIndex;
+		nextOptions[depth] = 0;
+		marks[depth] = mark;
+		depth++;
+	}
+
+	void pop() {
+		depth--;
+	}
+
+	boolean isEmpty() {
+		return depth == 0;
+	}
+
+	int depth() {
+		return depth;
+	}
+
+	int cell() {
+		return cells[depth - 1];
+	}
+
+	int mark() {
+		return marks[depth - 1];
+	}
+
+	int nextOption() {
+		return nextOptions[depth - 1];
+	}
+
+	void setNextOption(int ordinal) {
+		nextOptions[depth - 1] = ordinal;
+	}
+
+}
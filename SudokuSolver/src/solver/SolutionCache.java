@@ -0,0 +1,121 @@
+package solver;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sudoku.CanonicalForm;
+import sudoku.Grid;
+
+/**
+ * Remembers the solutions of recently solved puzzles by their
+ * {@link CanonicalForm}, so a puzzle equivalent to one solved before is not
+ * solved again: the cached solution is mapped back onto it instead.
+ *
+ * Puzzles are solved with the {@link DancingLinksSolver}, counting up to two
+ * solutions. The cache holds at most a given number of puzzles, evicting the
+ * least recently used. Puzzles whose canonical form cannot be found quickly
+ * are solved without the cache. It may be shared between threads; a puzzle
+ * missing from the cache is solved outside the lock, so two threads may both
+ * solve it.
+ */
+public class SolutionCache {
+
+	/**
+	 * What is known about the solutions of a puzzle.
+	 */
+	public static final class Outcome {
+		/**
+		 * 0, 1, or 2 for two or more.
+		 */
+		public final int numSolutions;
+		/**
+		 * A solution of the puzzle, or null if there is none.
+		 */
+		public final Grid solution;
+
+		Outcome(int numSolutions, Grid solution) {
+			this.numSolutions = numSolutions;
+			this.solution = solution;
+		}
+	}
+
+	private static final class Cached {
+		final int numSolutions;
+		// The canonical values of a solution, or null
+		final int[] solution;
+
+		Cached(int numSolutions, int[] solution) {
+			this.numSolutions = numSolutions;
+			this.solution = solution;
+		}
+	}
+
+	private final Map<CanonicalForm, Cached> entries;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public SolutionCache(final int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("The capacity must be positive");
+		this.entries = new LinkedHashMap<CanonicalForm, Cached>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<CanonicalForm, Cached> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Solve a puzzle, or look up the solution of an equivalent one.
+	 * @param puzzle It is not modified.
+	 */
+	public Outcome solve(Grid puzzle) {
+		CanonicalForm form = CanonicalForm.of(puzzle);
+		if (form == null) {
+			// Too symmetrical to find the canonical form of quickly
+			misses.incrementAndGet();
+			List<Grid> solutions = new DancingLinksSolver(puzzle).findSolutions(2);
+			return new Outcome(solutions.size(), solutions.isEmpty() ? null : solutions.get(0));
+		}
+		Cached entry;
+		synchronized (entries) {
+			entry = entries.get(form);
+		}
+		if (entry != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+			List<Grid> solutions = new DancingLinksSolver(puzzle).findSolutions(2);
+			entry = new Cached(solutions.size(), solutions.isEmpty() ? null : form.toCanonical(solutions.get(0)));
+			synchronized (entries) {
+				entries.put(form, entry);
+			}
+		}
+		Grid solution = entry.solution == null ? null : form.fromCanonical(entry.solution, puzzle);
+		return new Outcome(entry.numSolutions, solution);
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Solution cache: %d hits, %d misses, %d puzzles held", getHits(), getMisses(), size());
+	}
+
+}
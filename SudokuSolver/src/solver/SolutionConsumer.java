@@ -0,0 +1,20 @@
+package solver;
+
+import sudoku.Grid;
+
+/**
+ * Receives the solutions of a {@link Grid} one at a time, as soon as a solver
+ * finds them, so that enumerating or counting solutions does not require
+ * keeping them all.
+ */
+public interface SolutionConsumer {
+
+	/**
+	 * @param solution A solved grid. It belongs to the solver, which may go on
+	 * modifying it once this method returns; copy it with
+	 * {@link Grid#Grid(Grid)} to keep it.
+	 * @return true to continue the search, false to stop it.
+	 */
+	boolean accept(Grid solution);
+
+}
@@ -0,0 +1,142 @@
+package solver;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What a single solve did. The counters are plain fields, updated by the
+ * solver's own thread, so they are cheap enough to always be kept.
+ *
+ * When the solve is finished, the statistics are added to the process wide
+ * {@link SolverStatistics}.
+ */
+public class SolveStatistics {
+
+	/**
+	 * Search states explored: the initial grid, and one per option tried at
+	 * a guess.
+	 */
+	long nodesCreated;
+	/**
+	 * Options tried at cells with more than one possible element.
+	 */
+	long guesses;
+	/**
+	 * Search states abandoned because they turned out to have no solution.
+	 */
+	long backtracks;
+	/**
+	 * The largest number of nested guesses.
+	 */
+	int maxDepth;
+	long nakedSingles;
+	long hiddenSingles;
+	/**
+	 * Work items handled by a {@link Propagator}, whether or not they
+	 * filled a cell.
+	 */
+	long propagationSteps;
+	long wallNanos;
+
+	// The number of times each strategy of the pipeline eliminated candidates
+	private final List<Strategy> strategies;
+	final long[] strategyApplications;
+
+	/**
+	 * For solvers which do not use any {@link Strategy}.
+	 */
+	public SolveStatistics() {
+		this(new StrategyPipeline());
+	}
+
+	/**
+	 * @param strategies The strategy pipeline the solve uses.
+	 */
+	public SolveStatistics(StrategyPipeline strategies) {
+		this.strategies = strategies.getStrategies();
+		this.strategyApplications = new long[this.strategies.size()];
+	}
+
+	void reachedDepth(int depth) {
+		if (depth > maxDepth)
+			maxDepth = depth;
+	}
+
+	/**
+	 * Add the counters of another part of the same solve, e.g. a branch
+	 * searched by another thread. The wall time is not added.
+	 */
+	synchronized void merge(SolveStatistics other) {
+		nodesCreated += other.nodesCreated;
+		guesses += other.guesses;
+		backtracks += other.backtracks;
+		reachedDepth(other.maxDepth);
+		nakedSingles += other.nakedSingles;
+		hiddenSingles += other.hiddenSingles;
+		propagationSteps += other.propagationSteps;
+		for (int i = 0; i < strategyApplications.length; i++)
+			strategyApplications[i] += other.strategyApplications[i];
+	}
+
+	public long getNodesCreated() {
+		return nodesCreated;
+	}
+
+	public long getGuesses() {
+		return guesses;
+	}
+
+	public long getBacktracks() {
+		return backtracks;
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * @return The cells filled in because they had only one possible element.
+	 */
+	public long getNakedSingles() {
+		return nakedSingles;
+	}
+
+	/**
+	 * @return The cells filled in because an element fit nowhere else in a
+	 * section.
+	 */
+	public long getHiddenSingles() {
+		return hiddenSingles;
+	}
+
+	public long getPropagationSteps() {
+		return propagationSteps;
+	}
+
+	public long getWallNanos() {
+		return wallNanos;
+	}
+
+	/**
+	 * @return The number of times each strategy eliminated candidates, by the
+	 * strategy's name, in pipeline order.
+	 */
+	public Map<String, Long> getStrategyApplications() {
+		Map<String, Long> applications = new LinkedHashMap<String, Long>();
+		for (int i = 0; i < strategyApplications.length; i++)
+			applications.put(strategies.get(i).toString(), strategyApplications[i]);
+		return Collections.unmodifiableMap(applications);
+	}
+
+	@Override
+	public String toString() {
+		return "SolveStatistics [nodesCreated=" + nodesCreated + ", guesses=" + guesses
+				+ ", backtracks=" + backtracks + ", maxDepth=" + maxDepth
+				+ ", nakedSingles=" + nakedSingles + ", hiddenSingles=" + hiddenSingles
+				+ ", propagationSteps=" + propagationSteps + ", wallNanos=" + wallNanos
+				+ ", strategyApplications=" + getStrategyApplications() + "]";
+	}
+
+}
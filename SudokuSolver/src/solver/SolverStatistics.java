@@ -0,0 +1,155 @@
+package solver;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The {@link SolveStatistics} of every solve in the process added together,
+ * and registered as the MXBean {@value #OBJECT_NAME}.
+ *
+ * Solves only touch the aggregate once, when they finish, and the counters
+ * are striped {@link LongAdder}s, so solvers on many threads do not contend.
+ */
+public class SolverStatistics implements SolverStatisticsMXBean {
+
+	public static final String OBJECT_NAME = "solver:type=SolverStatistics";
+
+	private static final SolverStatistics instance = register(new SolverStatistics());
+
+	private final LongAdder solves = new LongAdder();
+	private final LongAdder nodesCreated = new LongAdder();
+	private final LongAdder guesses = new LongAdder();
+	private final LongAdder backtracks = new LongAdder();
+	private final AtomicInteger maxDepth = new AtomicInteger();
+	private final LongAdder nakedSingles = new LongAdder();
+	private final LongAdder hiddenSingles = new LongAdder();
+	private final LongAdder propagationSteps = new LongAdder();
+	private final LongAdder totalWallNanos = new LongAdder();
+	private final ConcurrentMap<String, LongAdder> strategyApplications = new ConcurrentHashMap<String, LongAdder>();
+
+	private SolverStatistics() {
+	}
+
+	public static SolverStatistics getInstance() {
+		return instance;
+	}
+
+	private static SolverStatistics register(SolverStatistics statistics) {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			server.registerMBean(statistics, new ObjectName(OBJECT_NAME));
+		} catch (JMException e) {
+			// The statistics are still kept, just not visible over JMX
+			System.err.println("Could not register " + OBJECT_NAME + ": " + e);
+		}
+		return statistics;
+	}
+
+	/**
+	 * Add the statistics of a finished solve.
+	 */
+	void record(SolveStatistics solve) {
+		solves.increment();
+		nodesCreated.add(solve.nodesCreated);
+		guesses.add(solve.guesses);
+		backtracks.add(solve.backtracks);
+		int depth = maxDepth.get();
+		while (solve.maxDepth > depth && !maxDepth.compareAndSet(depth, solve.maxDepth))
+			depth = maxDepth.get();
+		nakedSingles.add(solve.nakedSingles);
+		hiddenSingles.add(solve.hiddenSingles);
+		propagationSteps.add(solve.propagationSteps);
+		totalWallNanos.add(solve.wallNanos);
+		for (Map.Entry<String, Long> entry : solve.getStrategyApplications().entrySet()) {
+			LongAdder adder = strategyApplications.get(entry.getKey());
+			if (adder == null) {
+				LongAdder created = new LongAdder();
+				adder = strategyApplications.putIfAbsent(entry.getKey(), created);
+				if (adder == null)
+					adder = created;
+			}
+			adder.add(entry.getValue());
+		}
+	}
+
+	@Override
+	public long getSolves() {
+		return solves.sum();
+	}
+
+	@Override
+	public long getNodesCreated() {
+		return nodesCreated.sum();
+	}
+
+	@Override
+	public long getGuesses() {
+		return guesses.sum();
+	}
+
+	@Override
+	public long getBacktracks() {
+		return backtracks.sum();
+	}
+
+	@Override
+	public int getMaxDepth() {
+		return maxDepth.get();
+	}
+
+	@Override
+	public long getNakedSingles() {
+		return nakedSingles.sum();
+	}
+
+	@Override
+	public long getHiddenSingles() {
+		return hiddenSingles.sum();
+	}
+
+	@Override
+	public long getPropagationSteps() {
+		return propagationSteps.sum();
+	}
+
+	@Override
+	public long getTotalWallNanos() {
+		return totalWallNanos.sum();
+	}
+
+	@Override
+	public Map<String, Long> getStrategyApplications() {
+		Map<String, Long> applications = new TreeMap<String, Long>();
+		for (Map.Entry<String, LongAdder> entry : strategyApplications.entrySet())
+			applications.put(entry.getKey(), entry.getValue().sum());
+		return applications;
+	}
+
+	/**
+	 * Zero all the counters. Solves finishing during the reset may be
+	 * partially counted.
+	 */
+	@Override
+	public void reset() {
+		solves.reset();
+		nodesCreated.reset();
+		guesses.reset();
+		backtracks.reset();
+		maxDepth.set(0);
+		nakedSingles.reset();
+		hiddenSingles.reset();
+		propagationSteps.reset();
+		totalWallNanos.reset();
+		strategyApplications.clear();
+	}
+
+}
@@ -0,0 +1,32 @@
+package solver;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link SolverStatistics}.
+ */
+public interface SolverStatisticsMXBean {
+
+	long getSolves();
+
+	long getNodesCreated();
+
+	long getGuesses();
+
+	long getBacktracks();
+
+	int getMaxDepth();
+
+	long getNakedSingles();
+
+	long getHiddenSingles();
+
+	long getPropagationSteps();
+
+	long getTotalWallNanos();
+
+	Map<String, Long> getStrategyApplications();
+
+	void reset();
+
+}
@@ -0,0 +1,21 @@
+package solver;
+
+import sudoku.Grid;
+
+/**
+ * The outcome of one step of deduction on a {@link Grid}.
+ */
+public enum Step {
+	/**
+	 * A cell was filled in or a candidate was eliminated.
+	 */
+	PROGRESS,
+	/**
+	 * Nothing more can be deduced this way; the next step is a guess.
+	 */
+	STUCK,
+	/**
+	 * The grid turned out to have no solution.
+	 */
+	NO_SOLUTION
+}
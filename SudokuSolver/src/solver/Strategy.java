@@ -0,0 +1,23 @@
+package solver;
+
+import sudoku.Grid;
+
+/**
+ * A deduction technique which rules out candidates of a {@link Grid}'s
+ * cells without guessing. Strategies are run in order by a
+ * {@link StrategyPipeline}, after the singles have been filled in.
+ *
+ * Implementations must not keep state between calls, so that a single
+ * instance can be shared between solvers and threads.
+ */
+public interface Strategy {
+
+	/**
+	 * Look for one application of the strategy anywhere in the grid.
+	 * @return true iff any candidate was eliminated.
+	 * @throws NoSolutionException If the strategy shows the grid to be
+	 * unsolvable.
+	 */
+	boolean apply(Grid grid) throws NoSolutionException;
+
+}
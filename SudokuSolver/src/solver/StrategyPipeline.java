@@ -0,0 +1,107 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import sudoku.Grid;
+
+/**
+ * An ordered list of {@link Strategy}s to apply before falling back to
+ * guessing.
+ *
+ * The singles are always filled in first, by a {@link Propagator}. Then the
+ * strategies are tried in order, and as soon as one of them eliminates a
+ * candidate, the singles are propagated again and the pipeline restarts from
+ * the first strategy. The cheap strategies should therefore come first.
+ */
+public class StrategyPipeline {
+
+	private final List<Strategy> strategies;
+
+	/**
+	 * @param strategies The strategies to try, in order. With none, only the
+	 * singles are filled in.
+	 */
+	public StrategyPipeline(Strategy... strategies) {
+		this(Arrays.asList(strategies));
+	}
+
+	public StrategyPipeline(List<Strategy> strategies) {
+		this.strategies = Collections.unmodifiableList(new ArrayList<Strategy>(strategies));
+	}
+
+	/**
+	 * @return A pipeline of all the available strategies, cheapest first.
+	 */
+	public static StrategyPipeline createFull() {
+		return new StrategyPipeline(
+				new PointingPairs(),
+				new BoxLineReduction(),
+				new NakedSubsets(2),
+				new HiddenSubsets(2),
+				new NakedSubsets(3),
+				new HiddenSubsets(3),
+				new NakedSubsets(4),
+				new HiddenSubsets(4));
+	}
+
+	/**
+	 * @return A pipeline which filters every section with {@link AllDifferent}
+	 * instead of looking for subsets, which it subsumes. It deduces more on
+	 * large grids, where subsets of more than four cells are common.
+	 */
+	public static StrategyPipeline createAllDifferent() {
+		return new StrategyPipeline(
+				new PointingPairs(),
+				new BoxLineReduction(),
+				new AllDifferent());
+	}
+
+	public List<Strategy> getStrategies() {
+		return strategies;
+	}
+
+	/**
+	 * Fill in singles and apply the strategies until none of them make any
+	 * more progress.
+	 * @param propagator The propagator listening to the grid.
+	 * @param statistics Statistics created for this pipeline.
+	 * @return false iff the grid turned out to have no solution.
+	 */
+	public boolean run(Grid grid, Propagator propagator, SolveStatistics statistics) {
+		if (!propagator.propagate())
+			return false;
+		while (grid.getNumUnfilled() > 0) {
+			Step step = applyOne(grid, statistics);
+			if (step == Step.STUCK)
+				return true;
+			if (step == Step.NO_SOLUTION || !propagator.propagate())
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Try the strategies in order until one of them eliminates a candidate.
+	 * @param statistics Statistics created for this pipeline.
+	 * @return {@link Step#PROGRESS} iff any candidate was eliminated.
+	 */
+	public Step applyOne(Grid grid, SolveStatistics statistics) {
+		try {
+			for (int i = 0; i < strategies.size(); i++) {
+				Strategy strategy = strategies.get(i);
+				if (strategy.apply(grid)) {
+					Trace.record(Trace.Event.STRATEGY, -1, -1, i, strategy);
+					statistics.strategyApplications[i]++;
+					return Step.PROGRESS;
+				}
+			}
+		} catch (NoSolutionException e) {
+			return Step.NO_SOLUTION;
+		}
+		return Step.STUCK;
+	}
+
+}
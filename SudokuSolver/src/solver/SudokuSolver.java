@@ -3,84 +3,359 @@ package solver;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
+import java.util.Random;
 import java.util.Stack;
-import java.util.TreeMap;
 
 import sudoku.Cell;
 import sudoku.Element;
 import sudoku.ElementSet;
 import sudoku.ElementSet.CannotCreateElementSetException;
 import sudoku.Grid;
-import sudoku.Section;
+import sudoku.Trail;
 import util.Coord;
 import util.Dims;
-import util.VerbosePrintStream;
 
 @SuppressWarnings("unused")
-public class SudokuSolver {
+public class SudokuSolver implements CancellableSolver {
 	
-	public static final VerbosePrintStream out = new VerbosePrintStream(System.out);
+	/**
+	 * Pass as the solution limit to enumerate every solution of a grid.
+	 */
+	public static final int NO_LIMIT = Integer.MAX_VALUE;
+
+	/**
+	 * How the solver explores the branches created by guessing.
+	 */
+	public enum SearchMode {
+		/**
+		 * Every option of a guess gets its own copy of the {@link Grid}, kept in
+		 * a tree of {@link GridNode}s, so the guesses leading to each solution
+		 * can be printed. Each Grid gets its own {@link Propagator} while it is
+		 * being filled in.
+		 */
+		COPY,
+		/**
+		 * A single Grid is modified in place, and every change is recorded on a
+		 * {@link Trail} which is unwound when backtracking from a guess.
+		 * Only the solved grids are copied.
+		 */
+		TRAIL
+	}
+	
+	/**
+	 * How the solver chooses the cell to guess about.
+	 */
+	public enum CellHeuristic {
+		/**
+		 * See {@link SudokuSolver#findBestChoiceGuessableCell}.
+		 */
+		BEST_CHOICE,
+		/**
+		 * The first cell in row-major order of those with the fewest possible
+		 * elements.
+		 */
+		FEWEST_POSSIBLE,
+		/**
+		 * A random one of the cells with the fewest possible elements, drawn
+		 * from the random seed.
+		 */
+		RANDOM
+	}
+	
+	/**
+	 * The order in which the solver tries the options of a guess.
+	 */
+	public enum ValueOrder {
+		/**
+		 * By increasing element ordinal.
+		 */
+		ASCENDING,
+		/**
+		 * By decreasing element ordinal.
+		 */
+		DESCENDING,
+		/**
+		 * In an order of the elements shuffled at the start of every search,
+		 * drawn from the random seed.
+		 */
+		RANDOM
+	}
 
-	private final GridNode root;
 	private final Grid original;
+	private final SearchMode mode;
+	private StrategyPipeline strategies = StrategyPipeline.createFull();
+	private CellHeuristic cellHeuristic = CellHeuristic.BEST_CHOICE;
+	private ValueOrder valueOrder = ValueOrder.ASCENDING;
+	private long seed = 0;
+	private SolveStatistics statistics = null;
 	
-	private List<GridNode> solutions = new LinkedList<GridNode>();
+	// Drawn from the seed for the current search
+	private Random random = null;
+	// The element ordinals in the order they are tried as options of a guess
+	private int[] optionOrder = null;
+	
+	// Receives the solutions of the current search
+	private SolutionConsumer consumer = null;
+	// The search stops once this many solutions have been found
+	private int limit = NO_LIMIT;
+	private int found = 0;
+	private boolean stopped = false;
+	// Set by another thread to stop this search and every later one
+	private volatile boolean cancelled = false;
+	// Whether to print the solutions, and the guesses leading to them
+	private boolean print = false;
 	
 	public SudokuSolver(Grid grid) {
-		this.root = new GridNode(null, grid);
+		this(grid, SearchMode.COPY);
+	}
+	
+	public SudokuSolver(Grid grid, SearchMode mode) {
 		this.original = new Grid(grid);
+		this.mode = mode;
+	}
+	
+	/**
+	 * Set the deduction strategies to apply before guessing. Defaults to
+	 * {@link StrategyPipeline#createFull()}; an empty pipeline only fills in
+	 * singles, which may be faster on easy grids.
+	 */
+	public void setStrategyPipeline(StrategyPipeline strategies) {
+		this.strategies = strategies;
+	}
+	
+	/**
+	 * Set how the cell to guess about is chosen. Defaults to
+	 * {@link CellHeuristic#BEST_CHOICE}.
+	 */
+	public void setCellHeuristic(CellHeuristic cellHeuristic) {
+		this.cellHeuristic = cellHeuristic;
+	}
+	
+	/**
+	 * Set the order in which the options of a guess are tried. Defaults to
+	 * {@link ValueOrder#ASCENDING}.
+	 */
+	public void setValueOrder(ValueOrder valueOrder) {
+		this.valueOrder = valueOrder;
+	}
+	
+	/**
+	 * Set the seed of the random choices of {@link CellHeuristic#RANDOM} and
+	 * {@link ValueOrder#RANDOM}. Every search with the same seed makes the
+	 * same choices.
+	 */
+	public void setRandomSeed(long seed) {
+		this.seed = seed;
 	}
 	
+	/**
+	 * Stop the search in progress, and every later one, as soon as possible.
+	 * The search returns the solutions it found so far. May be called from
+	 * any thread.
+	 */
+	@Override
+	public void cancel() {
+		cancelled = true;
+	}
+	
+	/**
+	 * Find and print every solution of the grid.
+	 * @return The first solution found, or null if the grid has none.
+	 */
 	public Grid solve() {
+		return solve(NO_LIMIT);
+	}
+	
+	/**
+	 * Find and print solutions of the grid, along with the guesses leading to
+	 * them.
+	 * @param limit The search stops once this many solutions have been found.
+	 * @return The first solution found, or null if the grid has none.
+	 */
+	public Grid solve(int limit) {
+		final Grid[] first = new Grid[1];
+		search(new SolutionConsumer() {
+			@Override
+			public boolean accept(Grid solution) {
+				if (first[0] == null)
+					first[0] = new Grid(solution);
+				return true;
+			}
+		}, limit, true);
+		
+		System.out.println("Number of solutions: " + found);
+		
+		return first[0];
+	}
+	
+	/**
+	 * Pass every solution of the grid to a consumer as soon as it is found,
+	 * until the consumer stops the search. Only the solutions the consumer
+	 * copies are kept.
+	 * @return The number of solutions passed to the consumer.
+	 */
+	public int forEachSolution(SolutionConsumer consumer) {
+		search(consumer, NO_LIMIT, false);
+		return found;
+	}
+	
+	/**
+	 * @param limit The search stops once this many solutions have been found.
+	 * @return Up to limit solutions of the grid.
+	 */
+	@Override
+	public List<Grid> findSolutions(int limit) {
+		final List<Grid> grids = new ArrayList<Grid>();
+		search(new SolutionConsumer() {
+			@Override
+			public boolean accept(Grid solution) {
+				grids.add(new Grid(solution));
+				return true;
+			}
+		}, limit, false);
+		return grids;
+	}
+	
+	/**
+	 * @param limit The counting stops once this many solutions have been found.
+	 * @return The number of solutions of the grid, at most limit.
+	 */
+	public int countSolutions(int limit) {
+		search(new SolutionConsumer() {
+			@Override
+			public boolean accept(Grid solution) {
+				return true;
+			}
+		}, limit, false);
+		return found;
+	}
+	
+	/**
+	 * @return true iff the grid has exactly one solution.
+	 */
+	public boolean hasUniqueSolution() {
+		return countSolutions(2) == 1;
+	}
+	
+	/**
+	 * @return The statistics of the last search, or null if there has been
+	 * none.
+	 */
+	public SolveStatistics getStatistics() {
+		return statistics;
+	}
+	
+	private boolean isLimitReached() {
+		return stopped || cancelled;
+	}
+	
+	private void search(SolutionConsumer consumer, int limit, boolean print) {
+		this.consumer = consumer;
+		this.limit = limit;
+		this.print = print;
+		this.found = 0;
+		this.stopped = limit <= 0;
+		this.statistics = new SolveStatistics(strategies);
+		if (isLimitReached())
+			return;
+		this.random = new Random(seed);
+		this.optionOrder = createOptionOrder();
+		long start = System.nanoTime();
+		// The grid searched in place, or that of the root node
+		Grid working = new Grid(original);
 		try {
-			solve(root);
+			if (mode == SearchMode.TRAIL) {
+				Trail trail = new Trail(working);
+				Propagator propagator = new Propagator(working, statistics);
+				solveInPlace(working, trail, propagator);
+				propagator.detach();
+				trail.detach();
+			} else {
+				solve(new GridNode(null, working, null));
+			}
 		} catch (NullPointerException e) {
 			// In case I fucked something up.
-			root.grid.printBoard();
+			working.printBoard();
+			if (Trace.isEnabled())
+				Trace.dump(System.err);
 			throw e;
+		} finally {
+			// Also if the consumer threw
+			this.consumer = null;
+			statistics.wallNanos = System.nanoTime() - start;
+			SolverStatistics.getInstance().record(statistics);
 		}
-		
-		System.out.println("Number of solutions: " + solutions.size());
-		
-		for (GridNode node : solutions) {
+	}
+	
+	/**
+	 * Hand a solution to the consumer, and stop the search if it asks to or
+	 * the limit has been reached.
+	 * @param node The node of the solution, or null in
+	 * {@link SearchMode#TRAIL}, where the guesses are not kept.
+	 */
+	private void found(Grid solution, GridNode node) {
+		found++;
+		if (print) {
 			System.out.println("\n\n\n\n");
-			printGuesses(node);
+			printGuesses(solution, node);
 		}
-		
-		return solutions.isEmpty() ? null : solutions.get(0).grid;
+		if (!consumer.accept(solution) || found >= limit)
+			stopped = true;
 	}
 	
-	private void solve(GridNode node) {
+	/**
+	 * Expand the tree of {@link GridNode}s depth first, without recursing.
+	 * Only the path to the current node and the unexpanded siblings along it
+	 * are kept; a node is dropped from its parent as soon as it is expanded,
+	 * so finished subtrees are garbage, whether or not they held solutions.
+	 */
+	private void solve(GridNode root) {
+		Propagator propagator = new Propagator(root.grid, statistics);
+		GridNode node = root;
+		while (node != null) {
+			expand(node, propagator);
+			node = nextNode(node);
+		}
+		propagator.detach();
+	}
+	
+	/**
+	 * Make the node's guess and fill in its grid as far as possible without
+	 * guessing. The propagator is moved to the node's grid first, so only the
+	 * consequences of the guess are propagated. If another guess is needed,
+	 * create a child node for every option of it.
+	 */
+	private void expand(GridNode node, Propagator propagator) {
 		Grid grid = node.grid;
-		try {
-			while (grid.getNumUnfilled() > 0) {
-				SudokuSolver.out.println("Unfilled left: " + grid.getNumUnfilled());
-				solveOneCell(grid);
-			}
-		} catch (NeedToGuessException e) {
-			Cell guessAt = findBestChoiceGuessableCell(grid);
+		statistics.nodesCreated++;
+		if (node.parent != null) {
+			statistics.guesses++;
+			propagator.attach(grid);
+			grid.set(node.parent.splitOn, node.guess);
+		}
+		statistics.reachedDepth(node.depth);
+		boolean consistent = strategies.run(grid, propagator, statistics);
+		if (!consistent) {
+			node.successful = false;
+			statistics.backtracks++;
+			Trace.record(Trace.Event.NO_SOLUTION, -1, -1, node.depth);
+			return;
+		}
+		if (grid.getNumUnfilled() > 0) {
+			Cell guessAt = chooseGuessCell(grid);
 			Coord guessCoord = guessAt.getCoord();
 			node.children = new LinkedList<GridNode>();
 			node.splitOn = guessCoord;
 			
 			// Create the child nodes
-			for (Element option : guessAt.getAllPossible()) {
-				Grid possibleGrid = new Grid(grid);
-				possibleGrid.set(guessCoord, option);
-				GridNode childNode = new GridNode(node, possibleGrid);
+			for (int ordinal : optionOrder) {
+				Element option = grid.elements.getElement(ordinal);
+				if (!guessAt.isPossible(option))
+					continue;
+				Trace.record(Trace.Event.GUESS, guessAt.getIndex(), option.ordinal, node.depth + 1);
+				GridNode childNode = new GridNode(node, new Grid(grid), option);
 				node.children.add(childNode);
 			}
-			
-			// Expand the child nodes
-			for (GridNode child : node.children) {
-				solve(child);
-			}
-			return;
-			
-		} catch (NoSolutionException e) {
-			node.successful = false;
-			SudokuSolver.out.println("Node " + node + " had no solution: " + e.getMessage() + "\n");
 			return;
 		}
 		
@@ -88,154 +363,246 @@ public class SudokuSolver {
 		
 		if (grid.isSolved()) {
 			node.successful = true;
-			solutions.add(node);
+			Trace.record(Trace.Event.SOLUTION, -1, -1, node.depth);
 			GridNode ancestor = node.parent;
 			while (ancestor != null) {
 				ancestor.successfulChild = true;
 				ancestor = ancestor.parent;
 			}
-			
-			System.out.println("Board solved correctly! Final board state:");
-			grid.printBoard();
+			found(grid, node);
 		} else {
 			node.successful = false;
-			if (grid.verify())
-				System.out.println("Board unsolved, but correctly filled");
-			else
-				System.out.println("Board incorrectly filled.");
+			statistics.backtracks++;
+			if (print)
+				printUnsolved(grid);
 		}
-		System.out.println();
 	}
 	
-	private void solveOneCell(Grid grid) throws NeedToGuessException, NoSolutionException {
-		Cell filledCell;
-		
-		filledCell = fillSinglePossibility(grid);
-		if (filledCell != null) {
-			SudokuSolver.out.println("Filled cell " + filledCell + " from only possibility");
-			return;
-		}
-
-		filledCell = byElimination(grid);
-		if (filledCell != null) {
-			SudokuSolver.out.println("Filled cell " + filledCell + " by elimination");
-			return;
+	/**
+	 * @return The next node to expand after the given one in depth first
+	 * order, or null if the search is finished.
+	 */
+	private GridNode nextNode(GridNode node) {
+		while (node != null) {
+			if (node.children != null && !isLimitReached()) {
+				GridNode child = node.children.poll();
+				if (child != null)
+					return child;
+			}
+			// All the children of the node have been expanded
+			node.children = null;
+			node = node.parent;
 		}
-
-		SudokuSolver.out.println("Couldn't fill a cell.");
-		throw new NeedToGuessException();
+		return null;
 	}
 	
-	private Cell fillSinglePossibility(Grid grid) {
-		for (Cell cell : grid)
-			if (!cell.isFilled()) {
-				Element onlyPossibility = cell.getOnlyPossible();
-				if (onlyPossibility != null) {
-					grid.set(cell.getCoord(), onlyPossibility);
-					return cell;
+	/**
+	 * The {@link SearchMode#TRAIL} counterpart of {@link #solve(GridNode)}.
+	 * Singles are filled in by the {@link Propagator} and the strategies are
+	 * applied until a fixpoint is reached, and all changes made below a guess
+	 * are undone through the trail before the next option of the guess is
+	 * tried.
+	 * The guesses are kept on a {@link SearchStack} rather than the call
+	 * stack, so the search depth is not limited by the thread's stack size.
+	 */
+	private void solveInPlace(Grid grid, Trail trail, Propagator propagator) {
+		SearchStack stack = new SearchStack();
+		boolean consistent = deduce(grid, propagator, 0);
+		while (true) {
+			if (consistent) {
+				if (grid.getNumUnfilled() > 0) {
+					Cell guessAt = chooseGuessCell(grid);
+					stack.push(guessAt.getIndex(), trail.mark());
+					statistics.reachedDepth(stack.depth());
+				} else {
+					recordInPlace(grid, stack.depth());
 				}
 			}
-		return null;
+			
+			// Backtrack to the innermost guess with an option left to try
+			Element option = null;
+			while (!stack.isEmpty()) {
+				trail.undo(stack.mark());
+				if (!isLimitReached()) {
+					option = nextOption(grid, stack);
+					if (option != null)
+						break;
+				}
+				stack.pop();
+			}
+			if (option == null)
+				return;
+			
+			grid.set(grid.getCell(stack.cell()).getCoord(), option);
+			Trace.record(Trace.Event.GUESS, stack.cell(), option.ordinal, stack.depth());
+			statistics.guesses++;
+			consistent = deduce(grid, propagator, stack.depth());
+		}
 	}
 	
-	// Find some section where an element has only 1 eligible cell.
-	private Cell byElimination(Grid grid) throws NoSolutionException {
-		for (List<? extends Section> sectionCollection : grid.allSections)
-			for (Section section : sectionCollection) {
-				if (section.isFull())
-					continue;
-				elementLoop:
-				for (Element elem : grid.elements) {
-					if (section.isFilledIn(elem))
-						continue;
-					Cell possibleCell = null;
-					for (Cell cell : section) {
-						if (cell.isPossible(elem)) {
-							if (possibleCell == null)
-								possibleCell = cell;
-							else
-								continue elementLoop;
-						}
-					}
-					if (possibleCell == null)
-						// The element fits nowhere in a section, the grid is unsolvable
-						throw new NoSolutionException("Section: " + section + ", element: " + elem);
-					grid.set(possibleCell.getCoord(), elem);
-					return possibleCell;
-				}
+	/**
+	 * Fill in the grid as far as possible without guessing.
+	 * @param depth The number of guesses the grid is based on.
+	 * @return false iff the grid turned out to have no solution.
+	 */
+	private boolean deduce(Grid grid, Propagator propagator, int depth) {
+		statistics.nodesCreated++;
+		if (strategies.run(grid, propagator, statistics))
+			return true;
+		statistics.backtracks++;
+		Trace.record(Trace.Event.NO_SOLUTION, -1, -1, depth);
+		return false;
+	}
+	
+	/**
+	 * @return The next untried option of the innermost guess, or null if all
+	 * have been tried. The guessed cell must be unfilled.
+	 */
+	private Element nextOption(Grid grid, SearchStack stack) {
+		Cell cell = grid.getCell(stack.cell());
+		for (int i = stack.nextOption(); i < grid.numElements; i++) {
+			Element option = grid.elements.getElement(optionOrder[i]);
+			if (cell.isPossible(option)) {
+				stack.setNextOption(i + 1);
+				return option;
 			}
+		}
 		return null;
 	}
-
+	
+	private void recordInPlace(Grid grid, int depth) {
+		if (grid.isSolved()) {
+			Trace.record(Trace.Event.SOLUTION, -1, -1, depth);
+			found(grid, null);
+		} else {
+			statistics.backtracks++;
+			if (print)
+				printUnsolved(grid);
+		}
+	}
+	
+	private static void printUnsolved(Grid grid) {
+		if (grid.verify())
+			System.out.println("Board unsolved, but correctly filled");
+		else
+			System.out.println("Board incorrectly filled.");
+		System.out.println();
+	}
+	
+	/**
+	 * @return The element ordinals in the order of {@link #valueOrder}.
+	 */
+	private int[] createOptionOrder() {
+		int numElements = original.numElements;
+		int[] order = new int[numElements];
+		for (int i = 0; i < numElements; i++)
+			order[i] = valueOrder == ValueOrder.DESCENDING ? numElements - 1 - i : i;
+		if (valueOrder == ValueOrder.RANDOM) {
+			for (int i = numElements - 1; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				int swap = order[i];
+				order[i] = order[j];
+				order[j] = swap;
+			}
+		}
+		return order;
+	}
+	
+	/**
+	 * @return The cell to guess about according to {@link #cellHeuristic}, or
+	 * null if the grid is full.
+	 */
+	private Cell chooseGuessCell(Grid grid) {
+		switch (cellHeuristic) {
+		case FEWEST_POSSIBLE:
+			return findFewestPossibleCell(grid, null);
+		case RANDOM:
+			return findFewestPossibleCell(grid, random);
+		default:
+			return findBestChoiceGuessableCell(grid);
+		}
+	}
+	
+	/**
+	 * @param random Chooses among the cells with the fewest possible elements,
+	 * or null to take the first of them in row-major order.
+	 * @return An unfilled cell with the fewest possible elements, or null if
+	 * the grid is full.
+	 */
+	static Cell findFewestPossibleCell(Grid grid, Random random) {
+		int numPossible = 0;
+		while (grid.getFirstUnfilledWith(numPossible) == null)
+			if (++numPossible > grid.numElements)
+				return null;
+		
+		Cell chosen = null;
+		int seen = 0;
+		for (Cell cell = grid.getFirstUnfilledWith(numPossible); cell != null; cell = grid.getNextUnfilledWith(cell)) {
+			seen++;
+			// With a random generator, every cell seen so far is equally likely to be chosen
+			if (random != null ? random.nextInt(seen) == 0
+					: chosen == null || cell.getIndex() < chosen.getIndex())
+				chosen = cell;
+		}
+		return chosen;
+	}
+	
 	/**
 	 * Find a cell which is a good choice to guess about.
 	 * Criteria for cell choice:
 	 * 	1.	Has as few possible element values as possible.
 	 *  2.	The possible elements are rare in the grid currently.
 	 *  3.	The sections containing the cell have as few unfilled cells as possible.
-	 * @return
+	 * Remaining ties go to the first cell in row-major order.
+	 * The Grid keeps its unfilled cells in buckets by their number of
+	 * possibilities, along with the element frequencies and the number of
+	 * unfilled cells of each section, so only the cells of the lowest bucket
+	 * are looked at, and nothing is allocated.
+	 * @return The chosen cell, or null if the grid is full.
 	 */
-	private Cell findBestChoiceGuessableCell(Grid grid) {
+	static Cell findBestChoiceGuessableCell(Grid grid) {
 		// Criterion 1
-		
-		// Map from an int to the collection of cells which have this many
-		// different potential cell values currently.
-		TreeMap<Integer, List<Cell>> optionsLists = new TreeMap<Integer, List<Cell>>();
-		
-		for (Cell cell : grid)
-			if (!cell.isFilled()) {
-				int numPossibilities = cell.getNumPossible();
-				if (!optionsLists.containsKey(numPossibilities))
-					optionsLists.put(numPossibilities, new ArrayList<Cell>());
-				optionsLists.get(numPossibilities).add(cell);
-			}
-		
-		List<Cell> minOptionsCells = optionsLists.firstEntry().getValue();
-		
-		// Criterion 2
-		int[] elemFrequencies = grid.getElemFrequencies();
-		TreeMap<Integer, List<Cell>> optionRarity = new TreeMap<Integer, List<Cell>>();
-
-		for (Cell cell : minOptionsCells) {
+		int numPossible = 0;
+		while (grid.getFirstUnfilledWith(numPossible) == null)
+			if (++numPossible > grid.numElements)
+				return null;
+		
+		Cell best = null;
+		int bestRarity = 0;
+		int bestDesaturation = 0;
+		for (Cell cell = grid.getFirstUnfilledWith(numPossible); cell != null; cell = grid.getNextUnfilledWith(cell)) {
+			// Criterion 2
 			// Calculate the current rarity on the grid of the elements the cell
 			// could have as value
 			int raritySum = 0;
-			for (Element elem : cell.getAllPossible())
+			for (int i = cell.nextPossible(0); i >= 0; i = cell.nextPossible(i + 1)) {
 				// Square the frequency, as we want lower frequencies to be
 				// significantly more important.
-				raritySum += java.lang.Math.pow(elemFrequencies[elem.ordinal], 2);
+				int frequency = grid.getElemFrequency(i);
+				raritySum += frequency * frequency;
+			}
+			if (best != null && raritySum > bestRarity)
+				continue;
 			
-			if (!optionRarity.containsKey(raritySum))
-				optionRarity.put(raritySum, new LinkedList<Cell>());
-			optionRarity.get(raritySum).add(cell);
-		}
-		
-		List<Cell> rarestOptions = optionRarity.firstEntry().getValue();
-		
-		// Criterion 3
-		TreeMap<Integer, List<Cell>> sectionDesaturation = new TreeMap<Integer, List<Cell>>();
-		
-		for (Cell cell : rarestOptions) {
-			List<Section> containingSections = grid.collateContainingSections(cell.getCoord());
-			// This value technically denotes the "desaturation" of the section,
+			// Criterion 3
+			// This value technically denotes the "desaturation" of the sections,
 			// i.e. how many unfilled cells there are, rather than how many filled.
-			int desaturationSum = 0;
-			for (Section sec : containingSections)
-				desaturationSum += sec.getNumUnfilled();
-			
-			if (!sectionDesaturation.containsKey(desaturationSum))
-				sectionDesaturation.put(desaturationSum, new LinkedList<Cell>());
-			sectionDesaturation.get(desaturationSum).add(cell);
+			int desaturationSum = grid.getNumUnfilledAround(cell);
+			if (best == null || raritySum < bestRarity || desaturationSum < bestDesaturation
+					|| (desaturationSum == bestDesaturation && cell.getIndex() < best.getIndex())) {
+				best = cell;
+				bestRarity = raritySum;
+				bestDesaturation = desaturationSum;
+			}
 		}
-		
-		// Least desaturated, i.e. with lowest desaturation sum, fewest unfilled cells.
-		List<Cell> mostSaturated = sectionDesaturation.firstEntry().getValue();
-		
-		// Return the first cell in this narrowed down collection of cells.
-		return mostSaturated.get(0);
+		return best;
 	}
 	
-	private void printGuesses(GridNode successfulNode) {
+	/**
+	 * @param successfulNode The node of the solution, or null if the guesses
+	 * leading to it are unknown.
+	 */
+	private void printGuesses(Grid solution, GridNode successfulNode) {
 		Stack<GridNode> nodeStack = new Stack<GridNode>();
 		GridNode node = successfulNode;
 		while (node != null) {
@@ -246,7 +613,7 @@ public class SudokuSolver {
 		original.printBoard();
 		System.out.println();
 		
-		GridNode descendant = nodeStack.pop();
+		GridNode descendant = nodeStack.isEmpty() ? null : nodeStack.pop();
 		while (descendant != successfulNode) {
 			Coord guessCoord = descendant.splitOn;
 			Element guessed = nodeStack.peek().grid.getCell(guessCoord).getValue();
@@ -258,7 +625,7 @@ public class SudokuSolver {
 		}
 		
 		System.out.println("Successful configuration of board:");
-		successfulNode.grid.printBoard();
+		solution.printBoard();
 		System.out.println();
 	}
 	
@@ -332,7 +699,9 @@ public class SudokuSolver {
 		}
 	}
 	
-	private static Grid createKnownGrid2x3() {
+	// The known grids are also the fixtures of the SudokuBenchmarks module.
+	
+	static Grid createKnownGrid2x3() {
 		
 		String[] elemStrings = createElements6Numbers();
 		
@@ -357,7 +726,7 @@ public class SudokuSolver {
 		return grid;
 	}
 	
-	private static Grid createKnownGrid3x3() {
+	static Grid createKnownGrid3x3() {
 		
 		String[] elemStrings = createElements9Numbers();
 		
@@ -399,7 +768,7 @@ public class SudokuSolver {
 		return grid;
 	}
 	
-	private static Grid createKnownGrid3x3VeryHard() {
+	static Grid createKnownGrid3x3VeryHard() {
 		
 		String[] elemStrings = createElements9Numbers();
 		
@@ -433,7 +802,7 @@ public class SudokuSolver {
 		return grid;
 	}
 	
-	private static Grid createKnownGrid3x3Blah() {
+	static Grid createKnownGrid3x3Blah() {
 		
 		String[] elemStrings = createElements9Numbers();
 		
@@ -475,7 +844,7 @@ public class SudokuSolver {
 		return grid;
 	}
 	
-	private static Grid createKnownGrid3x3AI_Escargot() {
+	static Grid createKnownGrid3x3AI_Escargot() {
 		
 		String[] elemStrings = createElements9Numbers();
 		
@@ -513,7 +882,7 @@ public class SudokuSolver {
 		return grid;
 	}
 
-	private static Grid createKnownGrid3x3_17PreFilled() {
+	static Grid createKnownGrid3x3_17PreFilled() {
 		
 		String[] elemStrings = createElements9Numbers();
 		
@@ -558,15 +927,23 @@ public class SudokuSolver {
 	private class GridNode {
 		private final Grid grid;
 		private GridNode parent;
-		private List<GridNode> children;
+		// The children which have not been expanded yet
+		private LinkedList<GridNode> children;
 		// Only set once the node gets children
 		private Coord splitOn = null;
 		// private Stack<Action> moves;
 		private Boolean successful = null;
 		private boolean successfulChild = false;
-		GridNode(GridNode parent, Grid grid) {
+		// The option tried at the parent's splitOn, made once the node is
+		// expanded, or null for the root
+		private final Element guess;
+		// The number of guesses leading to this node
+		private final int depth;
+		GridNode(GridNode parent, Grid grid, Element guess) {
 			this.parent = parent;
 			this.grid = grid;
+			this.guess = guess;
+			this.depth = parent == null ? 0 : parent.depth + 1;
 		}
 				
 	}
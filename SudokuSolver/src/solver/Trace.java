@@ -0,0 +1,159 @@
+package solver;
+
+import java.io.PrintStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A trace of what the solvers do, kept as structured records in a fixed size
+ * in-memory ring buffer per thread, and only formatted when dumped, e.g. after
+ * a failure.
+ *
+ * Tracing is off unless the system property {@code solver.trace} is true or
+ * {@link #setEnabled} is called. Recording takes only primitives and
+ * references which already exist, so while tracing is off a call costs a
+ * single field read. The number of records kept per thread is set by the
+ * system property {@code solver.trace.size}.
+ */
+public final class Trace {
+
+	public enum Event {
+		/** A cell was filled in because it had only one possible element. The detail is 0. */
+		NAKED_SINGLE,
+		/**
+		 * A cell was filled in because an element fit nowhere else in a
+		 * section. The detail is the {@link sudoku.Topology} id of the
+		 * section.
+		 */
+		HIDDEN_SINGLE,
+		/** A strategy eliminated candidates. The subject is the strategy. */
+		STRATEGY,
+		/** An option was tried at a cell. The detail is the new guess depth. */
+		GUESS,
+		/** A search state had no solution. The detail is its guess depth. */
+		NO_SOLUTION,
+		/** A solution was found. The detail is its guess depth. */
+		SOLUTION
+	}
+
+	private static final int DEFAULT_SIZE = 4096;
+
+	private static volatile boolean enabled = Boolean.getBoolean("solver.trace");
+	private static final int size = Integer.getInteger("solver.trace.size", DEFAULT_SIZE);
+
+	// Only the ThreadLocal keeps a ring alive, so it goes with its thread
+	private static final List<WeakReference<Ring>> rings = new ArrayList<WeakReference<Ring>>();
+	private static final ThreadLocal<Ring> ring = new ThreadLocal<Ring>() {
+		@Override
+		protected Ring initialValue() {
+			Ring created = new Ring(Thread.currentThread().getName());
+			synchronized (rings) {
+				rings.add(new WeakReference<Ring>(created));
+			}
+			return created;
+		}
+	};
+
+	private Trace() {
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Turn tracing on or off for all threads. Records made while tracing was
+	 * on are kept.
+	 */
+	public static void setEnabled(boolean enabled) {
+		Trace.enabled = enabled;
+	}
+
+	/**
+	 * @param cell The index of the cell concerned, or -1.
+	 * @param element The ordinal of the element concerned, or -1.
+	 */
+	public static void record(Event event, int cell, int element, int detail) {
+		if (enabled)
+			ring.get().add(event, cell, element, detail, null);
+	}
+
+	public static void record(Event event, int cell, int element, int detail, Object subject) {
+		if (enabled)
+			ring.get().add(event, cell, element, detail, subject);
+	}
+
+	/**
+	 * Write out the records of the current thread, oldest first.
+	 */
+	public static void dump(PrintStream out) {
+		ring.get().dump(out);
+	}
+
+	/**
+	 * Write out the records of every live thread which has made any. This is
+	 * best-effort: the other threads are not stopped, so the records they make
+	 * meanwhile may be missing, or overwrite some of those being written out.
+	 */
+	public static void dumpAll(PrintStream out) {
+		List<Ring> all = new ArrayList<Ring>();
+		synchronized (rings) {
+			for (Iterator<WeakReference<Ring>> i = rings.iterator(); i.hasNext();) {
+				Ring r = i.next().get();
+				if (r == null)
+					i.remove();
+				else
+					all.add(r);
+			}
+		}
+		for (Ring r : all)
+			r.dump(out);
+	}
+
+	private static final class Ring {
+		private final String threadName;
+		private final Event[] events = new Event[size];
+		private final int[] cells = new int[size];
+		private final int[] elements = new int[size];
+		private final int[] details = new int[size];
+		private final Object[] subjects = new Object[size];
+		// The total number of records ever made
+		private long count = 0;
+
+		Ring(String threadName) {
+			this.threadName = threadName;
+		}
+
+		void add(Event event, int cell, int element, int detail, Object subject) {
+			int i = (int) (count++ % size);
+			events[i] = event;
+			cells[i] = cell;
+			elements[i] = element;
+			details[i] = detail;
+			subjects[i] = subject;
+		}
+
+		void dump(PrintStream out) {
+			// Only the owning thread writes, so take the end once
+			long end = count;
+			long first = Math.max(0, end - size);
+			out.println("Trace of " + threadName + ", records " + first + " to " + end + ":");
+			for (long n = first; n < end; n++) {
+				int i = (int) (n % size);
+				StringBuilder line = new StringBuilder();
+				line.append(n).append(' ').append(events[i]);
+				if (cells[i] >= 0)
+					line.append(" cell=").append(cells[i]);
+				if (elements[i] >= 0)
+					line.append(" element=").append(elements[i]);
+				line.append(" detail=").append(details[i]);
+				if (subjects[i] != null)
+					line.append(' ').append(subjects[i]);
+				out.println(line);
+			}
+		}
+	}
+
+}
@@ -1,24 +1,26 @@
 package sudoku;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
-import java.util.List;
 
 import util.Coord;
 
 public abstract class AbstractSection implements Section {
 	protected Grid grid;
-	protected List<Cell> cells;
-	// Which elements are currently filled in in the section
-	protected boolean[] filled;
+	// The indices of the cells, shared with the Topology for its sections
+	protected int[] cellIndices;
+	// How many times each element is filled in in the section
+	protected int[] counts;
+	// How many elements are filled in, kept up to date with counts
+	protected int numFilled = 0;
+	// How many copies of elements are filled in beyond the first
+	protected int numConflicts = 0;
 	
 	AbstractSection(Grid grid) {
 		this.grid = grid;
 		int numElements = grid.getNumElements();
-		this.cells = new ArrayList<Cell>(numElements);
-		this.filled = new boolean[numElements];		// Defaults to false
-		Arrays.fill(filled, false);
+		this.cellIndices = new int[0];
+		this.counts = new int[numElements];		// Defaults to 0
 //		collateCells();	//WARNING: CALL THIS IN SUBCLASS, NOT HERE!
 	}
 	
@@ -27,27 +29,48 @@ public abstract class AbstractSection implements Section {
 	}
 	
 	public Iterable<Cell> getCells() {
-		return cells;
+		return this;
+	}
+	
+	/**
+	 * @return The indices of the {@link Cell}s of this section, in the order
+	 * it iterates over them. The array must not be modified.
+	 */
+	public int[] getCellIndices() {
+		return cellIndices;
 	}
 
 	@Override
 	public Iterator<Cell> iterator() {
-		return cells.iterator();
+		return new Iterator<Cell>() {
+			private int i = 0;
+
+			@Override
+			public boolean hasNext() {
+				return i < cellIndices.length;
+			}
+
+			@Override
+			public Cell next() {
+				return grid.getCell(cellIndices[i++]);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
 	}
 
 	@Override
 	public boolean isFilledIn(Element element) {
-		return filled[element.ordinal];
+		return counts[element.ordinal] > 0;
 //		return getCoordOf(element) != null;
 	}
 	
 	@Override
 	public int getNumUnfilled() {
-		int unfilled = 0;
-		for (boolean isFilled : filled)
-			if (!isFilled)
-				unfilled++;
-		return unfilled;
+		return counts.length - numFilled;
 	}
 	
 	@Override
@@ -58,15 +81,50 @@ public abstract class AbstractSection implements Section {
 	// TODO: Remove the element argument from this method?
 	@Override
 	public void setFilledIn(Element element, Cell filledCell) {
-		filled[element.ordinal] = true;
+		setFilled(element);
 		for (Cell c : this)
 			if (c != filledCell)
 				c.setNotPossible(element);
 	}
 	
+	/**
+	 * Mark the element as filled in, without updating the possibilities of
+	 * the cells. Filling it in a second time makes the section inconsistent.
+	 */
+	void setFilled(Element element) {
+		if (counts[element.ordinal]++ == 0)
+			numFilled++;
+		else
+			numConflicts++;
+	}
+	
+	/**
+	 * Take on the filled in elements of the corresponding section of another
+	 * Grid of the same dimensions.
+	 */
+	void copyFrom(AbstractSection other) {
+		System.arraycopy(other.counts, 0, counts, 0, counts.length);
+		numFilled = other.numFilled;
+		numConflicts = other.numConflicts;
+	}
+	
+	@Override
+	public void setNotFilledIn(Element element) {
+		int count = counts[element.ordinal];
+		if (count > 0) {
+			counts[element.ordinal] = count - 1;
+			if (count == 1)
+				numFilled--;
+			else
+				numConflicts--;
+		}
+	}
+	
 	@Override
 	public void resetFilledCount() {
-		Arrays.fill(filled, false);
+		Arrays.fill(counts, 0);
+		numFilled = 0;
+		numConflicts = 0;
 //		for (int i = 0; i < filled.length; i++)
 //			filled[i] = false;
 	}
@@ -90,22 +148,14 @@ public abstract class AbstractSection implements Section {
 		return null;
 	}
 
+	/**
+	 * @return true iff no element is filled in twice. The counts are kept up
+	 * to date as the cells are filled in and cleared, so this takes constant
+	 * time.
+	 */
 	@Override
 	public boolean verify() {
-		for (int i = 0; i < filled.length; i++)
-			filled[i] = false;
-		
-		boolean valid = true;
-		for (Cell cell : this) {
-			Element elem = cell.getValue();
-			if (elem != null) {
-				// If this element has already been filled in somewhere else
-				if (filled[elem.ordinal])
-					valid = false;
-				filled[elem.ordinal] = true;
-			}
-		}
-		return valid;
+		return numConflicts == 0;
 	}
 	
 	/**
@@ -114,13 +164,21 @@ public abstract class AbstractSection implements Section {
 	 * selection.
 	 */
 	protected void collateCells() {
-		cells.clear();	// In case you done goof'd and call this more than once
 		int size = grid.getNumElements();
+		cellIndices = new int[size];	// In case you done goof'd and call this more than once
 		for (int i = 0; i < size; i++) {
-			cells.add(grid.getCell(findIthCoord(i)));
+			cellIndices[i] = grid.dimensions.cellCoordToCellIndex(findIthCoord(i));
 		}
 	}
 	
+	/**
+	 * Collate the cells of a section of the Grid's {@link Topology}, without
+	 * working out their coordinates.
+	 */
+	protected void collateCells(int sectionId) {
+		cellIndices = grid.topology.getSectionCells(sectionId);
+	}
+	
 	protected abstract Coord findIthCoord(int i);
 
 
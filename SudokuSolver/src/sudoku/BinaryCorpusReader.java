@@ -0,0 +1,232 @@
+package sudoku;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+import sudoku.ElementSet.CannotCreateElementSetException;
+import util.Dims;
+
+/**
+ * Reads a binary corpus written by a {@link BinaryCorpusWriter}, see there for
+ * the format.
+ *
+ * The records are read through a window of the file mapped into memory, which
+ * moves along as the records are scanned with {@link #next()}. Since the
+ * records have a fixed size, any record can be read directly with
+ * {@link #seek(long)}. Each record is decoded into reusable buffers of
+ * element ordinals, from which {@link #toGrid(int[], Grid)} fills a reusable
+ * {@link Grid}.
+ */
+public class BinaryCorpusReader implements Closeable {
+
+	// The most bytes of records mapped at a time
+	private static final long WINDOW_SIZE = 1L << 28;
+
+	private final FileChannel channel;
+	// An empty grid with the dimensions and elements of the corpus
+	private final Grid empty;
+	private final boolean withSolutions;
+	private final int bitsPerCell;
+	private final int recordSize;
+	private final long headerSize;
+	private final long numRecords;
+
+	private MappedByteBuffer window = null;
+	// The records in the window are [windowStart, windowEnd)
+	private long windowStart = 0;
+	private long windowEnd = 0;
+	// The record the next call of next() reads
+	private long nextRecord = 0;
+
+	// The element ordinals of the current record, or -1 for unfilled cells
+	private final int[] puzzle;
+	private final int[] solution;
+
+	public BinaryCorpusReader(FileChannel channel) throws IOException {
+		this.channel = channel;
+		channel.position(0);
+		DataInputStream header = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+		if (header.readInt() != BinaryCorpusWriter.MAGIC)
+			throw new IOException("Not a binary corpus");
+		int version = header.readUnsignedByte();
+		if (version != BinaryCorpusWriter.VERSION)
+			throw new IOException("Unsupported binary corpus version " + version);
+		int flags = header.readUnsignedByte();
+		this.withSolutions = (flags & BinaryCorpusWriter.FLAG_SOLUTIONS) != 0;
+		Dims cellsPerBox = new Dims(header.readUnsignedShort(), header.readUnsignedShort());
+		if (cellsPerBox.width == 0 || cellsPerBox.height == 0)
+			throw new IOException("The box dimensions must be positive");
+		// The bytes of the header read so far
+		long size = 4 + 1 + 1 + 2 + 2;
+
+		String[] elemStrings = new String[cellsPerBox.product()];
+		for (int i = 0; i < elemStrings.length; i++) {
+			byte[] content = new byte[header.readUnsignedShort()];
+			header.readFully(content);
+			elemStrings[i] = new String(content, BinaryCorpusWriter.UTF_8);
+			size += 2 + content.length;
+		}
+		try {
+			this.empty = new Grid(cellsPerBox, elemStrings.clone());
+		} catch (CannotCreateElementSetException e) {
+			throw new IOException("Bad element strings: " + e.getMessage());
+		}
+		for (int i = 0; i < elemStrings.length; i++)
+			if (!empty.elements.getElement(i).content.equals(elemStrings[i]))
+				throw new IOException("The element strings are not in order");
+		this.headerSize = size;
+
+		int numCells = empty.topology.numCells;
+		this.bitsPerCell = BinaryCorpusWriter.bitsPerCell(empty.numElements);
+		this.recordSize = BinaryCorpusWriter.recordSize(numCells, bitsPerCell, withSolutions);
+		long recordBytes = channel.size() - headerSize;
+		if (recordBytes % recordSize != 0)
+			throw new IOException("The corpus ends in the middle of a record");
+		this.numRecords = recordBytes / recordSize;
+		this.puzzle = new int[numCells];
+		this.solution = withSolutions ? new int[numCells] : null;
+	}
+
+	public static BinaryCorpusReader open(File file) throws FileNotFoundException, IOException {
+		return new BinaryCorpusReader(new FileInputStream(file).getChannel());
+	}
+
+	public Dims getCellsPerBox() {
+		return empty.dimensions.cellsPerBox;
+	}
+
+	public ElementSet getElements() {
+		return empty.elements;
+	}
+
+	public boolean hasSolutions() {
+		return withSolutions;
+	}
+
+	public long getNumRecords() {
+		return numRecords;
+	}
+
+	/**
+	 * Make the next call of {@link #next()} read the given record.
+	 */
+	public void seek(long record) {
+		if (record < 0 || record > numRecords)
+			throw new IndexOutOfBoundsException("Record " + record + " of " + numRecords);
+		nextRecord = record;
+	}
+
+	/**
+	 * Read the next record.
+	 * @return false if there are no more records.
+	 */
+	public boolean next() throws IOException {
+		if (nextRecord == numRecords)
+			return false;
+		if (nextRecord < windowStart || nextRecord >= windowEnd)
+			map(nextRecord);
+		decode((int) ((nextRecord - windowStart) * recordSize));
+		nextRecord++;
+		return true;
+	}
+
+	/**
+	 * @return The number of the record last read by {@link #next()}.
+	 */
+	public long getRecordNumber() {
+		return nextRecord - 1;
+	}
+
+	/**
+	 * @return The element ordinal of every cell of the current puzzle, in
+	 * row-major order, or -1 for an unfilled cell. The array is overwritten by
+	 * the next record.
+	 */
+	public int[] getPuzzle() {
+		return puzzle;
+	}
+
+	/**
+	 * @return The element ordinals of the solution of the current puzzle,
+	 * like {@link #getPuzzle()}, or null if the corpus has no solutions.
+	 */
+	public int[] getSolution() {
+		return solution;
+	}
+
+	/**
+	 * Fill a grid with values, e.g. those of {@link #getPuzzle()}.
+	 * @param reuse A grid returned by an earlier call, or null. It is reused
+	 * if it has the dimensions and elements of the corpus.
+	 * @return The filled grid.
+	 * @throws IOException If two of the values clash.
+	 */
+	public Grid toGrid(int[] values, Grid reuse) throws IOException {
+		Grid grid;
+		if (reuse != null && reuse.topology == empty.topology && reuse.elements == empty.elements) {
+			grid = reuse;
+			grid.copyFrom(empty);
+		} else {
+			grid = new Grid(empty);
+		}
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] < 0)
+				continue;
+			Element elem = grid.elements.getElement(values[i]);
+			Cell cell = grid.getCell(i);
+			if (!cell.isPossible(elem))
+				throw new IOException("Record " + getRecordNumber() + ": given " + elem + " at "
+						+ cell.getCoord() + " clashes with another given");
+			grid.set(cell.getCoord(), elem);
+		}
+		return grid;
+	}
+
+	@Override
+	public void close() throws IOException {
+		window = null;
+		channel.close();
+	}
+
+	private void map(long record) throws IOException {
+		long recordsPerWindow = Math.max(1, WINDOW_SIZE / recordSize);
+		long count = Math.min(recordsPerWindow, numRecords - record);
+		window = channel.map(FileChannel.MapMode.READ_ONLY, headerSize + record * recordSize, count * recordSize);
+		windowStart = record;
+		windowEnd = record + count;
+	}
+
+	/**
+	 * Unpack the values of the record starting at a byte of the window.
+	 */
+	private void decode(int offset) throws IOException {
+		int mask = (1 << bitsPerCell) - 1;
+		long bits = 0;
+		int numBits = 0;
+		int numCells = puzzle.length;
+		int numValues = withSolutions ? 2 * numCells : numCells;
+		for (int i = 0; i < numValues; i++) {
+			while (numBits < bitsPerCell) {
+				bits = bits << 8 | (window.get(offset++) & 0xFF);
+				numBits += 8;
+			}
+			numBits -= bitsPerCell;
+			int value = (int) (bits >>> numBits) & mask;
+			if (value > empty.numElements)
+				throw new IOException("Record " + nextRecord + ": element ordinal " + (value - 1) + " out of range");
+			if (i < numCells)
+				puzzle[i] = value - 1;
+			else
+				solution[i - numCells] = value - 1;
+		}
+	}
+
+}
@@ -0,0 +1,243 @@
+package sudoku;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+import util.Dims;
+
+/**
+ * Writes puzzles, and optionally their solutions, to a compact binary corpus
+ * which can be read by a {@link BinaryCorpusReader}.
+ *
+ * The file starts with a header:
+ * <ul>
+ * <li>the magic number {@link #MAGIC} and the format {@link #VERSION}, as an
+ * int and a byte,
+ * <li>a byte of flags, of which only {@link #FLAG_SOLUTIONS} is defined,
+ * <li>the width and height of a {@link Box} as shorts,
+ * <li>the element strings in the order of their ordinals, each as a short
+ * length followed by that many bytes of UTF-8.
+ * </ul>
+ * The header is followed by fixed size records, one per puzzle. A record holds
+ * the value of every cell in row-major order, as 0 for an unfilled cell or the
+ * element ordinal plus one otherwise, packed into as few bits as the number of
+ * elements allows, most significant bit first. With solutions, the solution
+ * follows the puzzle in the same record. A record is padded to a whole number
+ * of bytes, so a 9x9 puzzle takes 41 bytes.
+ */
+public class BinaryCorpusWriter implements Closeable, Flushable {
+
+	/**
+	 * "SDKB" in ASCII.
+	 */
+	public static final int MAGIC = 0x53444B42;
+	public static final int VERSION = 1;
+	/**
+	 * Set if every record holds a solution after its puzzle.
+	 */
+	public static final int FLAG_SOLUTIONS = 1;
+
+	static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final WritableByteChannel channel;
+	private final ByteBuffer buffer;
+	private final Topology topology;
+	private final ElementSet elements;
+	private final boolean withSolutions;
+	private final int bitsPerCell;
+	private final int recordSize;
+	private long numRecords = 0;
+	// The last bits of the current record, not yet put into the buffer
+	private long pending;
+	private int numPending;
+
+	/**
+	 * Write the header of a corpus.
+	 * @param like A grid with the dimensions and elements of every puzzle of
+	 * the corpus.
+	 * @param withSolutions Whether every puzzle is written with its solution.
+	 */
+	public BinaryCorpusWriter(WritableByteChannel channel, Grid like, boolean withSolutions) throws IOException {
+		this.channel = channel;
+		this.topology = like.topology;
+		this.elements = like.elements;
+		this.withSolutions = withSolutions;
+		this.bitsPerCell = bitsPerCell(elements.numElements);
+		this.recordSize = recordSize(topology.numCells, bitsPerCell, withSolutions);
+		this.buffer = ByteBuffer.allocate(Math.max(BUFFER_SIZE, recordSize));
+		buffer.put(encodeHeader(topology.dimensions.cellsPerBox, elements, withSolutions));
+	}
+
+	public static BinaryCorpusWriter create(File file, Grid like, boolean withSolutions) throws IOException {
+		return new BinaryCorpusWriter(new FileOutputStream(file).getChannel(), like, withSolutions);
+	}
+
+	/**
+	 * @param puzzle A grid of the dimensions and elements of the corpus.
+	 */
+	public void write(Grid puzzle) throws IOException {
+		if (withSolutions)
+			throw new IllegalStateException("The corpus has solutions");
+		check(puzzle);
+		startRecord();
+		putGrid(puzzle);
+		finishRecord();
+	}
+
+	public void write(Grid puzzle, Grid solution) throws IOException {
+		if (!withSolutions)
+			throw new IllegalStateException("The corpus has no solutions");
+		check(puzzle);
+		check(solution);
+		startRecord();
+		putGrid(puzzle);
+		putGrid(solution);
+		finishRecord();
+	}
+
+	/**
+	 * Write a record from the element ordinals of its cells, -1 for unfilled
+	 * cells, as returned by {@link BinaryCorpusReader#getPuzzle()}.
+	 * @param solution The ordinals of the solution, or null if the corpus has
+	 * no solutions.
+	 */
+	public void write(int[] puzzle, int[] solution) throws IOException {
+		if (withSolutions != (solution != null))
+			throw new IllegalStateException(withSolutions
+					? "The corpus has solutions" : "The corpus has no solutions");
+		check(puzzle);
+		if (solution != null)
+			check(solution);
+		startRecord();
+		putValues(puzzle);
+		if (solution != null)
+			putValues(solution);
+		finishRecord();
+	}
+
+	/**
+	 * @return The number of records written so far.
+	 */
+	public long getNumRecords() {
+		return numRecords;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * @return The number of bits needed for the values of a cell: 0 for
+	 * unfilled, and one per element.
+	 */
+	static int bitsPerCell(int numElements) {
+		return 32 - Integer.numberOfLeadingZeros(numElements);
+	}
+
+	static int recordSize(int numCells, int bitsPerCell, boolean withSolutions) {
+		long bits = (long) numCells * bitsPerCell * (withSolutions ? 2 : 1);
+		return (int) ((bits + 7) / 8);
+	}
+
+	private static byte[] encodeHeader(Dims cellsPerBox, ElementSet elements, boolean withSolutions)
+			throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream(bytes);
+		header.writeInt(MAGIC);
+		header.writeByte(VERSION);
+		header.writeByte(withSolutions ? FLAG_SOLUTIONS : 0);
+		header.writeShort(cellsPerBox.width);
+		header.writeShort(cellsPerBox.height);
+		for (Element elem : elements) {
+			byte[] content = elem.content.getBytes(UTF_8);
+			header.writeShort(content.length);
+			header.write(content);
+		}
+		header.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * A grid must have the box dimensions of the corpus, and the same element
+	 * strings with the same ordinals, though not necessarily the same
+	 * ElementSet.
+	 */
+	private void check(Grid grid) {
+		if (!grid.dimensions.cellsPerBox.equals(topology.dimensions.cellsPerBox) || !sameElements(grid.elements))
+			throw new IllegalArgumentException("The grid does not have the dimensions and elements of the corpus");
+	}
+
+	private boolean sameElements(ElementSet other) {
+		if (other == elements)
+			return true;
+		if (other.numElements != elements.numElements)
+			return false;
+		for (int i = 0; i < elements.numElements; i++)
+			if (!other.getElement(i).content.equals(elements.getElement(i).content))
+				return false;
+		return true;
+	}
+
+	private void check(int[] ordinals) {
+		if (ordinals.length != topology.numCells)
+			throw new IllegalArgumentException("Expected " + topology.numCells + " values, got " + ordinals.length);
+		for (int ordinal : ordinals)
+			if (ordinal < -1 || ordinal >= elements.numElements)
+				throw new IllegalArgumentException("Element ordinal " + ordinal + " out of range");
+	}
+
+	private void startRecord() throws IOException {
+		if (buffer.remaining() < recordSize)
+			flush();
+		pending = 0;
+		numPending = 0;
+	}
+
+	private void finishRecord() {
+		if (numPending > 0)
+			buffer.put((byte) (pending << (8 - numPending)));
+		numRecords++;
+	}
+
+	private void putGrid(Grid grid) {
+		for (int i = 0; i < topology.numCells; i++)
+			putBits(grid.getOrdinal(i) + 1);
+	}
+
+	private void putValues(int[] ordinals) {
+		for (int ordinal : ordinals)
+			putBits(ordinal + 1);
+	}
+
+	private void putBits(int value) {
+		pending = pending << bitsPerCell | value;
+		numPending += bitsPerCell;
+		while (numPending >= 8) {
+			numPending -= 8;
+			buffer.put((byte) (pending >>> numPending));
+		}
+	}
+
+}
@@ -8,14 +8,20 @@ public class Box extends AbstractSection implements Section {
 	Coord boxCoord;
 	Coord topLeft;
 	Dims dims;
+	int index;
 	
 	public Box(Grid grid, Coord boxCoord) {
+		this(grid, boxCoord, grid.dimensions.boxCoordToBoxIndex(boxCoord));
+	}
+	
+	Box(Grid grid, Coord boxCoord, int index) {
 		super(grid);
 //		System.out.println("Box constructor, dims and topLeft about to be set to "+dims+", "+topLeft);
 		this.boxCoord = boxCoord;
 		this.dims = grid.getCellsPerBox();
 		this.topLeft = boxCoord.multiply(dims);
-		collateCells();
+		this.index = index;
+		collateCells(grid.topology.boxId(index));
 	}
 
 	@Override
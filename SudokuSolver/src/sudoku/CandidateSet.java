@@ -0,0 +1,229 @@
+package sudoku;
+
+import java.util.Arrays;
+
+/**
+ * The set of {@link Element}s which are still eligible options for a
+ * {@link Cell}, stored as a bitset over the elements' ordinals.
+ * Grids with at most 64 elements keep the whole set in a single long word,
+ * larger grids use an array of words.
+ */
+public abstract class CandidateSet {
+
+	private static final int WORD_BITS = 64;
+
+	/**
+	 * @param numElements The number of {@link Element}s of the Grid.
+	 * @return An empty CandidateSet able to hold numElements ordinals.
+	 */
+	public static CandidateSet create(int numElements) {
+		return numElements <= WORD_BITS ? new Word(numElements) : new Words(numElements);
+	}
+
+	public abstract boolean contains(int ordinal);
+
+	public abstract void add(int ordinal);
+
+	/**
+	 * @return true iff the ordinal was a member of the set before the call.
+	 */
+	public abstract boolean remove(int ordinal);
+
+	/**
+	 * Add every ordinal of the Grid's {@link Element}s.
+	 */
+	public abstract void fill();
+
+	public abstract void clear();
+
+	/**
+	 * Replace the contents of this set with those of another set of the same
+	 * capacity.
+	 */
+	public abstract void copyFrom(CandidateSet other);
+
+	/**
+	 * Add every ordinal of another set of the same capacity.
+	 */
+	public abstract void addAll(CandidateSet other);
+
+	/**
+	 * Replace the contents of this set with the words of a bitset starting
+	 * at the given offset, e.g. a row of a {@link CandidateTable}.
+	 */
+	abstract void load(long[] source, int offset);
+
+	public abstract int size();
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * @return The lowest ordinal in the set, or -1 if it is empty.
+	 */
+	public abstract int first();
+
+	/**
+	 * @return The lowest ordinal in the set which is greater than or equal to
+	 * fromOrdinal, or -1 if there is none.
+	 */
+	public abstract int next(int fromOrdinal);
+
+	private static final class Word extends CandidateSet {
+		private final long all;
+		private long bits;
+
+		Word(int numElements) {
+			this.all = numElements == WORD_BITS ? -1L : (1L << numElements) - 1;
+		}
+
+		@Override
+		public boolean contains(int ordinal) {
+			return (bits & (1L << ordinal)) != 0;
+		}
+
+		@Override
+		public void add(int ordinal) {
+			bits |= 1L << ordinal;
+		}
+
+		@Override
+		public boolean remove(int ordinal) {
+			long mask = 1L << ordinal;
+			boolean present = (bits & mask) != 0;
+			bits &= ~mask;
+			return present;
+		}
+
+		@Override
+		public void fill() {
+			bits = all;
+		}
+
+		@Override
+		public void clear() {
+			bits = 0L;
+		}
+
+		@Override
+		public void copyFrom(CandidateSet other) {
+			bits = ((Word) other).bits;
+		}
+
+		@Override
+		public void addAll(CandidateSet other) {
+			bits |= ((Word) other).bits;
+		}
+
+		@Override
+		void load(long[] source, int offset) {
+			bits = source[offset];
+		}
+
+		@Override
+		public int size() {
+			return Long.bitCount(bits);
+		}
+
+		@Override
+		public int first() {
+			return bits == 0L ? -1 : Long.numberOfTrailingZeros(bits);
+		}
+
+		@Override
+		public int next(int fromOrdinal) {
+			if (fromOrdinal >= WORD_BITS)
+				return -1;
+			long rest = bits & (-1L << fromOrdinal);
+			return rest == 0L ? -1 : Long.numberOfTrailingZeros(rest);
+		}
+	}
+
+	private static final class Words extends CandidateSet {
+		private final int numElements;
+		private final long[] words;
+
+		Words(int numElements) {
+			this.numElements = numElements;
+			this.words = new long[(numElements + WORD_BITS - 1) / WORD_BITS];
+		}
+
+		@Override
+		public boolean contains(int ordinal) {
+			return (words[ordinal >>> 6] & (1L << ordinal)) != 0;
+		}
+
+		@Override
+		public void add(int ordinal) {
+			words[ordinal >>> 6] |= 1L << ordinal;
+		}
+
+		@Override
+		public boolean remove(int ordinal) {
+			int i = ordinal >>> 6;
+			long mask = 1L << ordinal;
+			boolean present = (words[i] & mask) != 0;
+			words[i] &= ~mask;
+			return present;
+		}
+
+		@Override
+		public void fill() {
+			Arrays.fill(words, -1L);
+			int spare = words.length * WORD_BITS - numElements;
+			words[words.length - 1] >>>= spare;
+		}
+
+		@Override
+		public void clear() {
+			Arrays.fill(words, 0L);
+		}
+
+		@Override
+		public void copyFrom(CandidateSet other) {
+			System.arraycopy(((Words) other).words, 0, words, 0, words.length);
+		}
+
+		@Override
+		public void addAll(CandidateSet other) {
+			long[] otherWords = ((Words) other).words;
+			for (int i = 0; i < words.length; i++)
+				words[i] |= otherWords[i];
+		}
+
+		@Override
+		void load(long[] source, int offset) {
+			System.arraycopy(source, offset, words, 0, words.length);
+		}
+
+		@Override
+		public int size() {
+			int size = 0;
+			for (long word : words)
+				size += Long.bitCount(word);
+			return size;
+		}
+
+		@Override
+		public int first() {
+			return next(0);
+		}
+
+		@Override
+		public int next(int fromOrdinal) {
+			int i = fromOrdinal >>> 6;
+			if (i >= words.length)
+				return -1;
+			long word = words[i] & (-1L << fromOrdinal);
+			while (true) {
+				if (word != 0L)
+					return i * WORD_BITS + Long.numberOfTrailingZeros(word);
+				if (++i == words.length)
+					return -1;
+				word = words[i];
+			}
+		}
+	}
+
+}
@@ -0,0 +1,100 @@
+package sudoku;
+
+import java.util.Arrays;
+
+/**
+ * The candidates of every {@link Cell} of a {@link Grid}, as bitsets over the
+ * elements' ordinals packed one after another into a single array of words,
+ * so a Grid holds no per-Cell candidate objects and is copied in one go.
+ * Each Cell takes as many words as a {@link CandidateSet} of the same
+ * capacity.
+ */
+final class CandidateTable {
+
+	private static final int WORD_BITS = 64;
+
+	final int wordsPerCell;
+	private final long[] words;
+	// The last word of a Cell with every element possible
+	private final long lastWordFull;
+
+	CandidateTable(int numCells, int numElements) {
+		this.wordsPerCell = (numElements + WORD_BITS - 1) / WORD_BITS;
+		this.words = new long[numCells * wordsPerCell];
+		int spare = wordsPerCell * WORD_BITS - numElements;
+		this.lastWordFull = -1L >>> spare;
+	}
+
+	boolean contains(int cell, int ordinal) {
+		return (words[cell * wordsPerCell + (ordinal >>> 6)] & (1L << ordinal)) != 0;
+	}
+
+	void add(int cell, int ordinal) {
+		words[cell * wordsPerCell + (ordinal >>> 6)] |= 1L << ordinal;
+	}
+
+	/**
+	 * @return true iff the ordinal was a candidate of the cell before the call.
+	 */
+	boolean remove(int cell, int ordinal) {
+		int i = cell * wordsPerCell + (ordinal >>> 6);
+		long mask = 1L << ordinal;
+		boolean present = (words[i] & mask) != 0;
+		words[i] &= ~mask;
+		return present;
+	}
+
+	void fill(int cell) {
+		int start = cell * wordsPerCell;
+		int last = start + wordsPerCell - 1;
+		Arrays.fill(words, start, last, -1L);
+		words[last] = lastWordFull;
+	}
+
+	void clear(int cell) {
+		int start = cell * wordsPerCell;
+		Arrays.fill(words, start, start + wordsPerCell, 0L);
+	}
+
+	int size(int cell) {
+		int start = cell * wordsPerCell;
+		int size = 0;
+		for (int i = start; i < start + wordsPerCell; i++)
+			size += Long.bitCount(words[i]);
+		return size;
+	}
+
+	/**
+	 * @return The lowest candidate ordinal of the cell which is greater than
+	 * or equal to fromOrdinal, or -1 if there is none.
+	 */
+	int next(int cell, int fromOrdinal) {
+		int w = fromOrdinal >>> 6;
+		if (w >= wordsPerCell)
+			return -1;
+		int start = cell * wordsPerCell;
+		long word = words[start + w] & (-1L << fromOrdinal);
+		while (true) {
+			if (word != 0L)
+				return w * WORD_BITS + Long.numberOfTrailingZeros(word);
+			if (++w == wordsPerCell)
+				return -1;
+			word = words[start + w];
+		}
+	}
+
+	/**
+	 * Replace the candidates of a CandidateSet with those of a cell.
+	 */
+	void copyTo(int cell, CandidateSet into) {
+		into.load(words, cell * wordsPerCell);
+	}
+
+	/**
+	 * Take on the candidates of another table of the same size.
+	 */
+	void copyFrom(CandidateTable other) {
+		System.arraycopy(other.words, 0, words, 0, words.length);
+	}
+
+}
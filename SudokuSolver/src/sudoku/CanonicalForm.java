@@ -0,0 +1,435 @@
+package sudoku;
+
+import java.util.Arrays;
+
+import util.Dims;
+
+/**
+ * The canonical form of a puzzle: the same for all puzzles which are equal up
+ * to relabelling the elements, reordering the bands of {@link Box}es, the rows
+ * within each band, the stacks of Boxes and the columns within each stack,
+ * and, when the Boxes are square, transposing the grid.
+ *
+ * The canonical form is the smallest of all these transformations of a
+ * puzzle, comparing the cells in row-major order, with unfilled cells as 0 and
+ * the elements numbered from 1 in order of their first appearance. The
+ * transformation leading to it is kept, so values can be mapped between the
+ * puzzle and the canonical form in both directions.
+ *
+ * Trying every transformation would take far too long, so the bands, rows,
+ * stacks and columns are first sorted by invariants: the number of clues in
+ * them and in the sections crossing them, and how often the elements of
+ * their clues appear in the puzzle. Only those with equal invariants are
+ * tried in every order, and the smallest form of these is taken. Puzzles with
+ * many symmetries, such as nearly empty ones, leave many orders to try; after
+ * {@link #MAX_STEPS} steps the search gives up.
+ *
+ * Two CanonicalForms are equal iff their canonical values are, whatever the
+ * transformations leading to them.
+ */
+public final class CanonicalForm {
+
+	// The most rows and columns placed in the search for a canonical form
+	static final int MAX_STEPS = 1 << 18;
+
+	private final Dims cellsPerBox;
+	private final int numElements;
+	// The canonical ordinal of every cell in row-major order, or -1
+	private final int[] values;
+	private final int hash;
+
+	// Canonical cell (i, j) comes from row rows[i] and column columns[j] of
+	// the puzzle, after transposing it if transposed is set
+	private final boolean transposed;
+	private final int[] rows;
+	private final int[] columns;
+	// The canonical ordinal of each element ordinal of the puzzle, and back
+	private final int[] canonicalElement;
+	private final int[] originalElement;
+
+	private CanonicalForm(Dims cellsPerBox, int[] values, boolean transposed, int[] rows, int[] columns,
+			int[] canonicalElement) {
+		this.cellsPerBox = cellsPerBox;
+		this.numElements = rows.length;
+		this.values = values;
+		this.hash = 31 * Arrays.hashCode(values) + cellsPerBox.hashCode();
+		this.transposed = transposed;
+		this.rows = rows;
+		this.columns = columns;
+		this.canonicalElement = canonicalElement;
+		this.originalElement = new int[numElements];
+		for (int e = 0; e < numElements; e++)
+			originalElement[canonicalElement[e]] = e;
+	}
+
+	/**
+	 * @return The canonical form of the values filled in a grid, or null
+	 * if it takes more than {@link #MAX_STEPS} to find.
+	 */
+	public static CanonicalForm of(Grid grid) {
+		int n = grid.numElements;
+		int[] values = new int[n * n];
+		for (int i = 0; i < values.length; i++)
+			values[i] = grid.getOrdinal(i);
+		return new Search(grid.dimensions.cellsPerBox, values).run();
+	}
+
+	/**
+	 * @return The canonical ordinal of every cell, in row-major order, or -1
+	 * for an unfilled cell. The array must not be modified.
+	 */
+	public int[] getValues() {
+		return values;
+	}
+
+	/**
+	 * Apply the transformation leading to this form to another grid of the
+	 * same shape, e.g. a solution of the puzzle.
+	 * @return The canonical ordinal of every cell, in row-major order, or -1
+	 * for an unfilled cell.
+	 */
+	public int[] toCanonical(Grid grid) {
+		int[] canonical = new int[numElements * numElements];
+		for (int i = 0; i < numElements; i++)
+			for (int j = 0; j < numElements; j++) {
+				int ordinal = grid.getOrdinal(originalIndex(i, j));
+				canonical[i * numElements + j] = ordinal < 0 ? -1 : canonicalElement[ordinal];
+			}
+		return canonical;
+	}
+
+	/**
+	 * Undo the transformation leading to this form, e.g. to turn the
+	 * canonical form of a solution into a solution of the puzzle.
+	 * @param canonical Canonical ordinals in row-major order, or -1.
+	 * @param puzzle The puzzle this form was made from. It is not modified.
+	 * @return A copy of the puzzle with the canonical values filled in.
+	 */
+	public Grid fromCanonical(int[] canonical, Grid puzzle) {
+		Grid grid = new Grid(puzzle);
+		for (int i = 0; i < numElements; i++)
+			for (int j = 0; j < numElements; j++) {
+				int value = canonical[i * numElements + j];
+				Cell cell = grid.getCell(originalIndex(i, j));
+				if (value >= 0 && !cell.isFilled())
+					grid.set(cell.getCoord(), grid.elements.getElement(originalElement[value]));
+			}
+		return grid;
+	}
+
+	private int originalIndex(int i, int j) {
+		return transposed ? columns[j] * numElements + rows[i] : rows[i] * numElements + columns[j];
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof CanonicalForm))
+			return false;
+		CanonicalForm other = (CanonicalForm) obj;
+		return hash == other.hash && cellsPerBox.equals(other.cellsPerBox) && Arrays.equals(values, other.values);
+	}
+
+	/**
+	 * Finds the smallest transformation of a puzzle among those which keep the
+	 * bands, rows, stacks and columns sorted by their invariants. The columns
+	 * are placed first, then the rows one at a time, and a partial placement
+	 * is abandoned as soon as it compares greater than the best complete one.
+	 */
+	private static final class Search {
+		// Marks that the cells placed so far are equal to those of the best form
+		private static final int NOT_LESS = Integer.MAX_VALUE;
+
+		private final Dims cellsPerBox;
+		private final int n;
+		private final int bandHeight;
+		private final int stackWidth;
+		private final int[] original;
+
+		private int[] source;
+		private boolean transposed;
+		// The invariants of the source
+		private final long[] rowKey;
+		private final long[] columnKey;
+		private final long[] bandKey;
+		private final long[] stackKey;
+
+		// The rows and columns placed so far, and the relabelled values
+		private final int[] rows;
+		private final int[] columns;
+		private final int[] current;
+		private final boolean[] rowUsed;
+		private final boolean[] bandUsed;
+		private final int[] bandAt;
+		private final boolean[] columnUsed;
+		private final boolean[] stackUsed;
+		private final int[] stackAt;
+		// The label of each element, from 1, or 0 if it has not appeared yet
+		private final int[] label;
+		private final int[] labelled;
+		private int numLabelled = 0;
+		// The first cell at which the current placement is less than the best
+		// form, or NOT_LESS; -1 before there is a best form
+		private int lessFrom = -1;
+		private int steps = 0;
+
+		private int[] best = null;
+		private boolean bestTransposed;
+		private int[] bestRows;
+		private int[] bestColumns;
+		private int[] bestLabel;
+
+		Search(Dims cellsPerBox, int[] original) {
+			this.cellsPerBox = cellsPerBox;
+			this.n = cellsPerBox.product();
+			// The bands are as many as a box is wide, and as high as a box;
+			// the stacks are as many as a box is high, and as wide as a box
+			this.bandHeight = cellsPerBox.height;
+			this.stackWidth = cellsPerBox.width;
+			this.original = original;
+			this.rowKey = new long[n];
+			this.columnKey = new long[n];
+			this.bandKey = new long[cellsPerBox.width];
+			this.stackKey = new long[cellsPerBox.height];
+			this.rows = new int[n];
+			this.columns = new int[n];
+			this.current = new int[n * n];
+			this.rowUsed = new boolean[n];
+			this.bandUsed = new boolean[cellsPerBox.width];
+			this.bandAt = new int[cellsPerBox.width];
+			this.columnUsed = new boolean[n];
+			this.stackUsed = new boolean[cellsPerBox.height];
+			this.stackAt = new int[cellsPerBox.height];
+			this.label = new int[n];
+			this.labelled = new int[n];
+		}
+
+		CanonicalForm run() {
+			boolean transposable = cellsPerBox.width == cellsPerBox.height;
+			for (int t = 0; t < (transposable ? 2 : 1); t++) {
+				transposed = t == 1;
+				source = transposed ? transpose(original) : original;
+				computeKeys();
+				placeColumn(0);
+			}
+			if (steps > MAX_STEPS)
+				return null;
+
+			// Number the elements which do not appear after those which do
+			int nextLabel = 1;
+			for (int e = 0; e < n; e++)
+				nextLabel = Math.max(nextLabel, bestLabel[e] + 1);
+			int[] canonicalElement = new int[n];
+			for (int e = 0; e < n; e++)
+				canonicalElement[e] = (bestLabel[e] != 0 ? bestLabel[e] : nextLabel++) - 1;
+			int[] values = new int[n * n];
+			for (int i = 0; i < values.length; i++)
+				values[i] = best[i] - 1;
+			return new CanonicalForm(cellsPerBox, values, bestTransposed, bestRows, bestColumns, canonicalElement);
+		}
+
+		private int[] transpose(int[] values) {
+			int[] transposed = new int[n * n];
+			for (int r = 0; r < n; r++)
+				for (int c = 0; c < n; c++)
+					transposed[c * n + r] = values[r * n + c];
+			return transposed;
+		}
+
+		/**
+		 * Work out invariants of the rows, columns, bands and stacks of the
+		 * source, which none of the transformations but transposition change
+		 * except by moving them around.
+		 */
+		private void computeKeys() {
+			int numStacks = stackKey.length;
+			int[] rowCount = new int[n];
+			int[] columnCount = new int[n];
+			int[] boxCount = new int[n];
+			int[] frequency = new int[n];
+			for (int r = 0; r < n; r++)
+				for (int c = 0; c < n; c++) {
+					int value = source[r * n + c];
+					if (value >= 0) {
+						rowCount[r]++;
+						columnCount[c]++;
+						boxCount[r / bandHeight * numStacks + c / stackWidth]++;
+						frequency[value]++;
+					}
+				}
+			Arrays.fill(rowKey, 0);
+			Arrays.fill(columnKey, 0);
+			for (int r = 0; r < n; r++)
+				for (int c = 0; c < n; c++) {
+					int value = source[r * n + c];
+					if (value < 0)
+						continue;
+					long cellKey = mix(((long) frequency[value] << 48) | ((long) rowCount[r] << 32)
+							| ((long) columnCount[c] << 16) | boxCount[r / bandHeight * numStacks + c / stackWidth]);
+					// Summing makes the keys independent of the order of the cells
+					rowKey[r] += cellKey;
+					columnKey[c] += cellKey;
+				}
+			Arrays.fill(bandKey, 0);
+			Arrays.fill(stackKey, 0);
+			for (int i = 0; i < n; i++) {
+				bandKey[i / bandHeight] += mix(rowKey[i]);
+				stackKey[i / stackWidth] += mix(columnKey[i]);
+			}
+		}
+
+		private static long mix(long key) {
+			key ^= key >>> 33;
+			key *= 0xFF51AFD7ED558CCDL;
+			key ^= key >>> 33;
+			key *= 0xC4CEB9FE1A85EC53L;
+			key ^= key >>> 33;
+			return key;
+		}
+
+		/**
+		 * Place the columns from a position on, keeping the stacks together
+		 * and in the order of their keys, then the rows.
+		 */
+		private void placeColumn(int position) {
+			if (position == n) {
+				placeRow(0);
+				return;
+			}
+			int slot = position / stackWidth;
+			if (position % stackWidth == 0) {
+				long min = Long.MAX_VALUE;
+				for (int s = 0; s < stackUsed.length; s++)
+					if (!stackUsed[s])
+						min = Math.min(min, stackKey[s]);
+				for (int s = 0; s < stackUsed.length; s++)
+					if (!stackUsed[s] && stackKey[s] == min) {
+						stackUsed[s] = true;
+						stackAt[slot] = s;
+						placeColumnOfStack(position, s);
+						stackUsed[s] = false;
+					}
+			} else {
+				placeColumnOfStack(position, stackAt[slot]);
+			}
+		}
+
+		private void placeColumnOfStack(int position, int stack) {
+			int first = stack * stackWidth;
+			long min = Long.MAX_VALUE;
+			for (int c = first; c < first + stackWidth; c++)
+				if (!columnUsed[c])
+					min = Math.min(min, columnKey[c]);
+			for (int c = first; c < first + stackWidth && ++steps <= MAX_STEPS; c++)
+				if (!columnUsed[c] && columnKey[c] == min) {
+					columnUsed[c] = true;
+					columns[position] = c;
+					placeColumn(position + 1);
+					columnUsed[c] = false;
+				}
+		}
+
+		/**
+		 * Place the rows from a depth on, keeping the bands together and in
+		 * the order of their keys.
+		 */
+		private void placeRow(int depth) {
+			if (depth == n) {
+				if (lessFrom != NOT_LESS)
+					keepAsBest();
+				return;
+			}
+			int slot = depth / bandHeight;
+			if (depth % bandHeight == 0) {
+				long min = Long.MAX_VALUE;
+				for (int b = 0; b < bandUsed.length; b++)
+					if (!bandUsed[b])
+						min = Math.min(min, bandKey[b]);
+				for (int b = 0; b < bandUsed.length; b++)
+					if (!bandUsed[b] && bandKey[b] == min) {
+						bandUsed[b] = true;
+						bandAt[slot] = b;
+						placeRowOfBand(depth, b);
+						bandUsed[b] = false;
+					}
+			} else {
+				placeRowOfBand(depth, bandAt[slot]);
+			}
+		}
+
+		private void placeRowOfBand(int depth, int band) {
+			int first = band * bandHeight;
+			long min = Long.MAX_VALUE;
+			for (int r = first; r < first + bandHeight; r++)
+				if (!rowUsed[r])
+					min = Math.min(min, rowKey[r]);
+			for (int r = first; r < first + bandHeight && ++steps <= MAX_STEPS; r++) {
+				if (rowUsed[r] || rowKey[r] != min)
+					continue;
+				int mark = numLabelled;
+				if (relabelRow(depth, r)) {
+					rowUsed[r] = true;
+					rows[depth] = r;
+					placeRow(depth + 1);
+					rowUsed[r] = false;
+				}
+				undo(depth * n, mark);
+			}
+		}
+
+		/**
+		 * Put the relabelled values of a row of the source in place.
+		 * @return false if the cells placed so far have become greater than
+		 * the best form.
+		 */
+		private boolean relabelRow(int depth, int r) {
+			int offset = depth * n;
+			for (int j = 0; j < n; j++) {
+				int value = source[r * n + columns[j]];
+				int relabelled = 0;
+				if (value >= 0) {
+					if (label[value] == 0) {
+						labelled[numLabelled++] = value;
+						label[value] = numLabelled;
+					}
+					relabelled = label[value];
+				}
+				current[offset + j] = relabelled;
+				if (lessFrom == NOT_LESS) {
+					if (relabelled > best[offset + j])
+						return false;
+					if (relabelled < best[offset + j])
+						lessFrom = offset + j;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Take back the cells placed from an index on, and the labels given
+		 * since a mark.
+		 */
+		private void undo(int index, int mark) {
+			while (numLabelled > mark)
+				label[labelled[--numLabelled]] = 0;
+			if (lessFrom >= index && lessFrom != NOT_LESS)
+				lessFrom = NOT_LESS;
+		}
+
+		private void keepAsBest() {
+			best = current.clone();
+			bestTransposed = transposed;
+			bestRows = rows.clone();
+			bestColumns = columns.clone();
+			bestLabel = label.clone();
+			lessFrom = NOT_LESS;
+		}
+	}
+
+}
@@ -1,99 +1,147 @@
 package sudoku;
 
-import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 import util.Coord;
 
+/**
+ * A view of one cell of a {@link Grid}. The value and the possible elements
+ * are kept in the Grid's flat arrays, by the cell's index.
+ */
 public class Cell {
 	public final Coord coord;
+	// Position of the cell in row-major order, see SizeInfo.cellCoordToCellIndex
+	final int index;
 	private final Grid grid;
-	private boolean[] possible;
-	private Element value = null;
 	
-	Cell(Grid grid, Coord coord) {
+	Cell(Grid grid, int index) {
 		this.grid = grid;
-		this.coord = coord;
-		this.possible = new boolean[grid.getNumElements()];
-//		for (int i = 0; i < possible.length; i++)
-//			possible[i] = true;
-		Arrays.fill(possible, true);
+		this.coord = grid.topology.getCoord(index);
+		this.index = index;
 	}
 	
-	Cell(Grid grid, Coord coord, Element value) {
+	Cell(Grid grid, int index, Element value) {
 //		this.grid = grid;
 //		this.coord = coord;
 //		this.value = value;
 //		this.possible = new boolean[grid.getNumElements()];
 //		for (int i = 0; i < possible.length; i++)
 //			possible[i] = value == null;
-		this(grid, coord);
+		this(grid, index);
 		this.setValue(value);
 	}
 	
 	void setValue(Element value) {
-		this.value = value;
+		grid.values[index] = value == null ? -1 : (short) value.ordinal;
 		if (value != null) {
 			// No other value can be set here.
-//			for (int i = 0; i < possible.length; i++)
-//				possible[i] = false;
-			Arrays.fill(possible, false);
+			CandidateTable possible = grid.candidates;
+			if (grid.trail != null || grid.listener != null) {
+				for (int i = possible.next(index, 0); i >= 0; i = possible.next(index, i + 1)) {
+					possible.remove(index, i);
+					candidateRemoved(i);
+				}
+			}
+			possible.clear(index);
 		}
+		grid.fillStateChanged(this);
 	}
 	
 	void setNotPossible(Element value) {
-		possible[value.ordinal] = false;
+		if (grid.candidates.remove(index, value.ordinal)) {
+			grid.possibilitiesChanged(this);
+			candidateRemoved(value.ordinal);
+		}
+	}
+	
+	private void candidateRemoved(int ordinal) {
+		if (grid.trail != null)
+			grid.trail.candidateRemoved(this, ordinal);
+		if (grid.listener != null)
+			grid.listener.candidateRemoved(this, grid.elements.getElement(ordinal));
+	}
+	
+	void setPossible(Element value) {
+		grid.candidates.add(index, value.ordinal);
+		grid.possibilitiesChanged(this);
 	}
 	
 	public Element getValue() {
-		return value;
+		int ordinal = grid.values[index];
+		return ordinal < 0 ? null : grid.elements.getElement(ordinal);
 	}
 	
 	public Coord getCoord() {
 		return coord;
 	}
+	
+	/**
+	 * @return The position of the cell in row-major order, see
+	 * {@link SizeInfo#cellCoordToCellIndex}.
+	 */
+	public int getIndex() {
+		return index;
+	}
 
 	public boolean isFilled() {
-		return value != null;
+		return grid.values[index] >= 0;
 	}
 	
 	public boolean isPossible(Element element) {
 		// This method relies on all the possible arrays of the grid being
 		// properly updated every time a cell is filled.
-		return element == null || possible[element.ordinal];
+		return element == null || grid.candidates.contains(index, element.ordinal);
 	}
 	
+	/**
+	 * Make every element possible again, or none if the cell is filled.
+	 */
 	void resetPossibilities() {
-		for (int i = 0; i < possible.length; i++)
-			possible[i] = true;
+		if (isFilled())
+			grid.candidates.clear(index);
+		else
+			grid.candidates.fill(index);
 	}
 	
 	public int getNumPossible() {
-		int numPossible = 0;
-		for (boolean possibility : possible)
-			if (possibility)
-				numPossible++;
-		return numPossible;
+		return grid.candidates.size(index);
+	}
+	
+	/**
+	 * @return The lowest ordinal of a possible element which is greater than
+	 * or equal to fromOrdinal, or -1 if there is none. Iterates over the
+	 * possibilities without allocating.
+	 */
+	public int nextPossible(int fromOrdinal) {
+		return grid.candidates.next(index, fromOrdinal);
 	}
 	
 	// Returns the only possible element if there is only one, null otherwise
 	public Element getOnlyPossible() {
-		List<Element> allPossible = getAllPossible();
-		return allPossible.size() == 1 ? allPossible.get(0) : null;
+		CandidateTable possible = grid.candidates;
+		return possible.size(index) == 1 ? grid.elements.getElement(possible.next(index, 0)) : null;
+	}
+	
+	/**
+	 * Copy the possible elements of this cell into the given set, which must
+	 * have been created for the same number of elements.
+	 */
+	public void getAllPossible(CandidateSet into) {
+		grid.candidates.copyTo(index, into);
 	}
 	
 	public List<Element> getAllPossible() {
-		List<Element> allPossible = new LinkedList<Element>();
-		for (Element e : grid.elements)
-			if (possible[e.ordinal])
-				allPossible.add(e);
+		CandidateTable possible = grid.candidates;
+		List<Element> allPossible = new ArrayList<Element>(possible.size(index));
+		for (int i = possible.next(index, 0); i >= 0; i = possible.next(index, i + 1))
+			allPossible.add(grid.elements.getElement(i));
 		return allPossible;
 	}
 	
 	@Override
 	public String toString() {
-		return "Cell [coord=" + coord + ", value=" + value + "]";
+		return "Cell [coord=" + coord + ", value=" + getValue() + "]";
 	}
 	
 }
@@ -8,6 +8,11 @@ public class Column extends Line implements Section {
 		super(grid, index);
 	}
 
+	@Override
+	protected void collateCells() {
+		collateCells(grid.topology.columnId(index));
+	}
+
 	@Override
 	protected Coord findIthCoord(int i) {
 //		System.out.println("Column.findIthCoord, uses index. index="+index+", i="+i+", coord="+new Coord(i, index));
@@ -1,6 +1,7 @@
 package sudoku;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -13,9 +14,11 @@ import util.Dims;
 // Origin of grid coords is top left
 /**
  * The full grid of {@link Cell}s that make up a Sudoku puzzle.
- * Contains all the Cells in a double array, but also stores the conceptual
- * {@link Section}s of the grid, i.e. {@link Row}s, {@link Column}s and
- * {@link Box}es, as well as possible custom ones.
+ * The values and the possible elements of all the Cells are kept in flat
+ * primitive arrays indexed by cell index, which the Cell objects are views
+ * of. The Grid also stores the conceptual {@link Section}s of the grid, i.e.
+ * {@link Row}s, {@link Column}s and {@link Box}es, as well as possible custom
+ * ones.
  */
 public class Grid implements Iterable<Cell> {
 	
@@ -25,6 +28,11 @@ public class Grid implements Iterable<Cell> {
 	public static final int DEFAULT_COLS_PER_BOX = 3;
 	
 	public final SizeInfo dimensions;
+	/**
+	 * The precomputed layout of the {@link Row}s, {@link Column}s and
+	 * {@link Box}es, shared by all Grids of the same dimensions.
+	 */
+	public final Topology topology;
 	
 	/**
 	 * The complete set of the Grid's unique {@link Element}s.
@@ -45,11 +53,45 @@ public class Grid implements Iterable<Cell> {
 	 * which do not have an {@link Element} assigned yet.
 	 */
 	private int unfilled;
+	/**
+	 * The number of copies of elements filled in in the {@link Section}s
+	 * beyond the first, summed over all Sections. The Grid is consistent iff
+	 * it is 0.
+	 */
+	private int conflicts = 0;
+	/**
+	 * The number of times each {@link Element} is filled in, by ordinal.
+	 */
+	private final int[] frequencies;
+	/**
+	 * Whether a candidate has been ruled out by {@link #eliminate} since the
+	 * possibilities were last worked out from scratch.
+	 */
+	private boolean deduced = false;
 	
 	/**
-	 * Grid of {@link Cell}s, height by width.
+	 * The ordinal of the {@link Element} filled in at each {@link Cell}, by
+	 * cell index, or -1 if the Cell is unfilled.
 	 */
-	private Cell[][] grid;
+	final short[] values;
+	/**
+	 * The possible elements of every {@link Cell}.
+	 */
+	final CandidateTable candidates;
+	/**
+	 * Views of the {@link Cell}s, by cell index.
+	 */
+	private final Cell[] cells;
+	/**
+	 * The unfilled {@link Cell}s in buckets by their number of possible
+	 * elements, as doubly linked lists of cell indices: bucketHead[k] is the
+	 * first Cell with k possibilities, or -1. bucketOf holds the bucket of
+	 * each Cell, or -1 if it is filled.
+	 */
+	private final int[] bucketHead;
+	private final int[] bucketNext;
+	private final int[] bucketPrev;
+	private final int[] bucketOf;
 	
 	/**
 	 * All the {@link Row}s of this Grid.
@@ -68,11 +110,23 @@ public class Grid implements Iterable<Cell> {
 	 * {@link Column}s or {@link Box}es.
 	 */
 	private List<Section> otherSections;
+	/**
+	 * The rows, columns and boxes, by their {@link Topology} section id.
+	 */
+	private final AbstractSection[] sectionsById;
 	/**
 	 * A meta-list of {@link #rows}, {@link #columns}, {@link #boxes} and
 	 * {@link #otherSections}.
 	 */
 	public List<List<? extends Section>> allSections;
+	/**
+	 * Records the changes made to this Grid while attached, see {@link Trail}.
+	 */
+	Trail trail = null;
+	/**
+	 * Notified of every candidate removed from a Cell, see {@link #setListener}.
+	 */
+	GridListener listener = null;
 
 	/**
 	 * Create an empty Grid.
@@ -82,47 +136,80 @@ public class Grid implements Iterable<Cell> {
 	 * @throws CannotCreateElementSetException 
 	 */
 	public Grid(Dims cellsPerBox, String[] elements) throws CannotCreateElementSetException {
-		this(null, cellsPerBox, new ElementSet(elements));
+		this(Topology.get(cellsPerBox), new ElementSet(elements));
 	}
 	
 	/**
-	 * Used for copying a grid.
+	 * Used for copying a grid. The values and the remaining possibilities of
+	 * the cells are copied as they are, rather than being worked out again.
 	 */
 	public Grid(Grid origGrid) {
-		this(origGrid.grid, origGrid.dimensions.cellsPerBox, origGrid.elements);
+		this(origGrid.topology, origGrid.elements);
+		copyFrom(origGrid);
+	}
+	
+	/**
+	 * Overwrite the values and possibilities of this Grid with those of
+	 * another Grid with the same topology and elements, e.g. to reuse it.
+	 */
+	void copyFrom(Grid origGrid) {
+		assert (origGrid.topology == topology && origGrid.elements == elements);
+		System.arraycopy(origGrid.values, 0, values, 0, values.length);
+		candidates.copyFrom(origGrid.candidates);
+		for (int s = 0; s < sectionsById.length; s++)
+			sectionsById[s].copyFrom(origGrid.sectionsById[s]);
+		this.unfilled = origGrid.unfilled;
+		this.conflicts = origGrid.conflicts;
+		this.deduced = origGrid.deduced;
+		System.arraycopy(origGrid.frequencies, 0, frequencies, 0, frequencies.length);
+		System.arraycopy(origGrid.bucketHead, 0, bucketHead, 0, bucketHead.length);
+		System.arraycopy(origGrid.bucketNext, 0, bucketNext, 0, bucketNext.length);
+		System.arraycopy(origGrid.bucketPrev, 0, bucketPrev, 0, bucketPrev.length);
+		System.arraycopy(origGrid.bucketOf, 0, bucketOf, 0, bucketOf.length);
 	}
 	
-	private Grid(Cell[][] origGrid, Dims cellsPerBox, ElementSet elements) {
-		assert(cellsPerBox.width > 0 && cellsPerBox.height > 0);
-		assert(elements.numElements == cellsPerBox.width * cellsPerBox.height);
-		this.dimensions = new SizeInfo(cellsPerBox);
+	private Grid(Topology topology, ElementSet elements) {
+		assert(elements.numElements == topology.numElements);
+		this.topology = topology;
+		this.dimensions = topology.dimensions;
 		this.elements = elements;
 		this.numElements = elements.numElements;
 		
-		// The width and height of the Grid in terms of Cells
-		int width = dimensions.cellsPerGrid.width;
-		int height = dimensions.cellsPerGrid.height;
-		assert(origGrid == null || origGrid.length == height && origGrid[0].length == width);
-		this.unfilled = this.dimensions.cellsPerGrid.product();
+		this.unfilled = topology.numCells;
+		this.frequencies = new int[numElements];
 
 		// Instantiate cells
-		this.grid = new Cell[height][width];
-		for (int r = 0; r < height; r++) {
-			for (int c = 0; c < width; c++) {
-				Cell cell = new Cell(this, new Coord(r, c));
-				this.grid[r][c] = cell;
-			}
+		this.values = new short[topology.numCells];
+		Arrays.fill(values, (short) -1);
+		this.candidates = new CandidateTable(topology.numCells, numElements);
+		this.cells = new Cell[topology.numCells];
+		this.bucketHead = new int[numElements + 1];
+		this.bucketNext = new int[topology.numCells];
+		this.bucketPrev = new int[topology.numCells];
+		this.bucketOf = new int[topology.numCells];
+		Arrays.fill(bucketOf, -1);
+		for (int i = 0; i < cells.length; i++) {
+			cells[i] = new Cell(this, i);
+			candidates.fill(i);
 		}
+		rebuildBuckets();
 		
 		// Instantiate sections
 		rows = new ArrayList<Row>(numElements);
 		columns = new ArrayList<Column>(numElements);
 		boxes = new ArrayList<Box>(numElements);
+		sectionsById = new AbstractSection[topology.numSections];
 		int numBoxesWide = dimensions.boxesPerGrid.width;
 		for (int i = 0; i < numElements; i++) {
-			rows.add(new Row(this, i));
-			columns.add(new Column(this, i));
-			boxes.add(new Box(this, new Coord(i / numBoxesWide, i % numBoxesWide)));
+			Row row = new Row(this, i);
+			Column column = new Column(this, i);
+			Box box = new Box(this, new Coord(i / numBoxesWide, i % numBoxesWide), i);
+			rows.add(row);
+			columns.add(column);
+			boxes.add(box);
+			sectionsById[topology.rowId(i)] = row;
+			sectionsById[topology.columnId(i)] = column;
+			sectionsById[topology.boxId(i)] = box;
 		}
 		otherSections = new LinkedList<Section>();	// E.g. diagonals etc
 		
@@ -131,17 +218,16 @@ public class Grid implements Iterable<Cell> {
 		allSections.add(columns);
 		allSections.add(boxes);
 		allSections.add(otherSections);
-		
-		// Fill in the cells from the original grid (if there is one) only
-		// after everything else, so stuff validates and updates correctly.
-		if (origGrid != null)
-			for (Cell cell : this) {
-				Coord coord = cell.coord;
-				Element value = origGrid[coord.row][coord.col].getValue();
-				if (value != null) {
-					this.set(coord, value);
-				}
-			}
+	}
+	
+	/**
+	 * Set the listener notified of every candidate removed from a {@link Cell}
+	 * of this Grid, replacing any previous listener. Candidates restored by
+	 * undoing a {@link Trail} are not reported.
+	 * @param listener The new listener, or null to remove it.
+	 */
+	public void setListener(GridListener listener) {
+		this.listener = listener;
 	}
 	
 	public static SizeInfo getDefaultDimensions() {
@@ -152,29 +238,20 @@ public class Grid implements Iterable<Cell> {
 	 * @return true iff the Grid is solved.
 	 */
 	public boolean isSolved() {
-		// First check if the grid is consistent, i.e. that no section contains
-		// two copies of the same element.
-		if (!verify())
-			return false;
-		// If the grid is consistent and all cells are filled, then it is solved.
-		for (List<? extends Section> sections : allSections)
-			for (Section section : sections)
-				if (!section.isFull())
-					return false;
-		return true;
+		// If the grid is consistent, i.e. no section contains two copies of
+		// the same element, and all cells are filled, then it is solved.
+		return unfilled == 0 && conflicts == 0;
 	}
 	
 	/**
 	 * Verifies whether the Grid is consistent.
 	 * The Grid is consistent if no {@link Section} contains two copies of the same element.
+	 * The count of such copies is kept up to date by {@link #set}, so this
+	 * takes constant time.
 	 * @return true iff the Grid is consistent.
 	 */
 	public boolean verify() {
-		for (List<? extends Section> sectionList : allSections)
-			for (Section section : sectionList)
-				if (!section.verify())
-					return false;
-		return true;
+		return conflicts == 0;
 	}
 	
 	/**
@@ -183,10 +260,13 @@ public class Grid implements Iterable<Cell> {
 	 * @return true iff the Cell is consistent with its containing sections.
 	 */
 	boolean verify(Coord coord) {
-		List<Section> containingSections = collateContainingSections(coord);
-		for (Section section : containingSections)
-			if (!section.verify())
+		for (int s : topology.getCellSections(dimensions.cellCoordToCellIndex(coord)))
+			if (!sectionsById[s].verify())
 				return false;
+		if (!otherSections.isEmpty())
+			for (Section section : otherSections)
+				if (section.contains(coord) && !section.verify())
+					return false;
 		return true;
 	}
 	
@@ -243,23 +323,142 @@ public class Grid implements Iterable<Cell> {
 		if (allowed) {
 			Cell cell = getCell(coord); 
 			Element prevValue = cell.getValue();
+			if (trail != null) {
+				if (possibility == null)
+					throw new IllegalStateException("Cannot clear a cell while a Trail is attached");
+				trail.valueAssigned(cell, possibility);
+			}
 			// Set the actual value in the cell
 			cell.setValue(possibility);
 			unfilled += possibility != null ? -1 : (prevValue != null ? 1 : 0);
-			if (possibility != null) {
-				// Update all other cell in same section to no longer have this possibility
-				List<Section> containingSections = collateContainingSections(coord);
-				for (Section section : containingSections)
-					section.setFilledIn(possibility, cell);
-			} else {
-				recalculatePossibilites();
-			}
+			if (prevValue != null)
+				frequencies[prevValue.ordinal]--;
+			if (possibility != null)
+				frequencies[possibility.ordinal]++;
+			if (possibility != null)
+				fillIn(cell, possibility);
+			else if (prevValue != null)
+				clearOut(cell, prevValue);
 		}
 		
 		return allowed;
 	}
 	
+	/**
+	 * Mark the value of a {@link Cell} as filled in in its {@link Section}s,
+	 * and rule it out for the Cell's peers.
+	 */
+	private void fillIn(Cell cell, Element value) {
+		for (int s : topology.getCellSections(cell.index)) {
+			if (sectionsById[s].isFilledIn(value))
+				conflicts++;
+			sectionsById[s].setFilled(value);
+		}
+		// Update all other cells in the same sections to no longer have this possibility
+		for (int p : topology.getPeers(cell.index))
+			cells[p].setNotPossible(value);
+		if (!otherSections.isEmpty())
+			for (Section section : otherSections)
+				if (section.contains(cell.coord)) {
+					if (section.isFilledIn(value))
+						conflicts++;
+					section.setFilledIn(value, cell);
+				}
+	}
+	
+	/**
+	 * Undo {@link #fillIn} for a {@link Cell} which has just been cleared.
+	 * The Cell gets back every element not filled in around it, and its peers
+	 * get back the removed value unless it is filled in around them too.
+	 * Deductions made with {@link #eliminate} may have relied on the removed
+	 * value, so if there were any, all possibilities are worked out again.
+	 */
+	private void clearOut(Cell cell, Element value) {
+		markNotFilledIn(cell, value);
+		if (deduced) {
+			recalculatePossibilites();
+			return;
+		}
+		for (Element elem : elements)
+			if (!isFilledAround(cell, elem))
+				cell.setPossible(elem);
+		for (int p : topology.getPeers(cell.index))
+			restore(cells[p], value);
+		if (!otherSections.isEmpty())
+			for (Section section : otherSections)
+				if (section.contains(cell.coord))
+					for (Cell other : section)
+						if (other != cell)
+							restore(other, value);
+	}
+	
+	private void restore(Cell cell, Element value) {
+		if (!cell.isFilled() && !isFilledAround(cell, value))
+			cell.setPossible(value);
+	}
+	
+	/**
+	 * @return true iff the value is filled in in one of the {@link Section}s
+	 * containing the {@link Cell}.
+	 */
+	private boolean isFilledAround(Cell cell, Element value) {
+		for (int s : topology.getCellSections(cell.index))
+			if (sectionsById[s].isFilledIn(value))
+				return true;
+		if (!otherSections.isEmpty())
+			for (Section section : otherSections)
+				if (section.contains(cell.coord) && section.isFilledIn(value))
+					return true;
+		return false;
+	}
+	
+	/**
+	 * Rule out an {@link Element} as an option for an unfilled {@link Cell},
+	 * e.g. as the result of a deduction.
+	 * @return true iff the element was an eligible option before the call.
+	 */
+	public boolean eliminate(Coord coord, Element possibility) {
+		Cell cell = getCell(coord);
+		if (!cell.isPossible(possibility))
+			return false;
+		cell.setNotPossible(possibility);
+		deduced = true;
+		return true;
+	}
+	
+	/**
+	 * Undo an assignment recorded by a {@link Trail}. The candidates removed
+	 * by the assignment are restored by the Trail itself.
+	 */
+	void unassign(Cell cell, Element value) {
+		cell.setValue(null);
+		unfilled++;
+		frequencies[value.ordinal]--;
+		markNotFilledIn(cell, value);
+	}
+	
+	/**
+	 * Mark the value of a {@link Cell} as no longer filled in in its
+	 * {@link Section}s, without updating the possibilities of any Cells.
+	 */
+	private void markNotFilledIn(Cell cell, Element value) {
+		for (int s : topology.getCellSections(cell.index)) {
+			sectionsById[s].setNotFilledIn(value);
+			if (sectionsById[s].isFilledIn(value))
+				conflicts--;
+		}
+		if (!otherSections.isEmpty())
+			for (Section section : otherSections)
+				if (section.contains(cell.coord)) {
+					section.setNotFilledIn(value);
+					if (section.isFilledIn(value))
+						conflicts--;
+				}
+	}
+	
 	void recalculatePossibilites() {
+		deduced = false;
+		conflicts = 0;
 		for (Cell cell : this) {
 			cell.resetPossibilities();
 		}
@@ -269,16 +468,73 @@ public class Grid implements Iterable<Cell> {
 			}
 		}
 		
-		for (Cell cell : this) {
-			if (cell.isFilled()) {
-				Element cellValue = cell.getValue();
-				List<Section> containingSections = collateContainingSections(cell.getCoord());
-				for (Section section : containingSections)
-					section.setFilledIn(cellValue, cell);
-			}
+		for (Cell cell : cells) {
+			if (cell.isFilled())
+				fillIn(cell, cell.getValue());
+		}
+		rebuildBuckets();
+	}
+	
+	/**
+	 * Put every unfilled {@link Cell} into the bucket of its number of
+	 * possibilities.
+	 */
+	private void rebuildBuckets() {
+		Arrays.fill(bucketHead, -1);
+		for (Cell cell : cells) {
+			bucketOf[cell.index] = -1;
+			if (!cell.isFilled())
+				link(cell.index, cell.getNumPossible());
 		}
 	}
 	
+	/**
+	 * Move a {@link Cell} to the bucket of its number of possibilities, after
+	 * they have changed. Filled Cells are not in any bucket.
+	 */
+	void possibilitiesChanged(Cell cell) {
+		int bucket = bucketOf[cell.index];
+		if (bucket >= 0 && bucket != cell.getNumPossible()) {
+			unlink(cell.index);
+			link(cell.index, cell.getNumPossible());
+		}
+	}
+	
+	/**
+	 * Take a {@link Cell} which has just been filled in out of its bucket, or
+	 * put one which has just been cleared into one.
+	 */
+	void fillStateChanged(Cell cell) {
+		if (cell.isFilled()) {
+			if (bucketOf[cell.index] >= 0)
+				unlink(cell.index);
+		} else if (bucketOf[cell.index] < 0) {
+			link(cell.index, cell.getNumPossible());
+		}
+	}
+	
+	private void link(int index, int bucket) {
+		int head = bucketHead[bucket];
+		bucketNext[index] = head;
+		bucketPrev[index] = -1;
+		if (head >= 0)
+			bucketPrev[head] = index;
+		bucketHead[bucket] = index;
+		bucketOf[index] = bucket;
+	}
+	
+	private void unlink(int index) {
+		int next = bucketNext[index];
+		int prev = bucketPrev[index];
+		if (prev >= 0)
+			bucketNext[prev] = next;
+		else
+			bucketHead[bucketOf[index]] = next;
+		if (next >= 0)
+			bucketPrev[next] = prev;
+		bucketOf[index] = -1;
+	}
+	
 	@Override
 	public Iterator<Cell> iterator() {
 		return new GridIterator();
@@ -287,7 +543,7 @@ public class Grid implements Iterable<Cell> {
 	private class GridIterator implements Iterator<Cell> {
 
 		int currIndex;
-		final int totalCells = dimensions.cellsPerGrid.product();
+		final int totalCells = cells.length;
 		
 		GridIterator() {
 			currIndex = 0;
@@ -300,7 +556,7 @@ public class Grid implements Iterable<Cell> {
 
 		@Override
 		public Cell next() {
-			return getCell(dimensions.cellIndexToCellCoord(currIndex++));
+			return cells[currIndex++];
 		}
 
 		@Override
@@ -316,12 +572,91 @@ public class Grid implements Iterable<Cell> {
 		return unfilled;
 	}
 	
+	/**
+	 * @return An unfilled {@link Cell} with the given number of possible
+	 * elements, or null if there is none. The others follow from
+	 * {@link #getNextUnfilledWith(Cell)}, in no particular order.
+	 */
+	public Cell getFirstUnfilledWith(int numPossible) {
+		int head = bucketHead[numPossible];
+		return head < 0 ? null : cells[head];
+	}
+	
+	/**
+	 * @return The unfilled {@link Cell} after the given one with the same
+	 * number of possible elements, or null if it is the last.
+	 */
+	public Cell getNextUnfilledWith(Cell cell) {
+		int next = bucketNext[cell.index];
+		return next < 0 ? null : cells[next];
+	}
+	
+	/**
+	 * @param index The index of a {@link Cell}, see {@link #getCell(int)}.
+	 * @return The ordinal of the {@link Element} filled in at the Cell, or -1
+	 * if it is unfilled.
+	 */
+	public int getOrdinal(int index) {
+		return values[index];
+	}
+	
+	/**
+	 * @return The number of times the {@link Element} with the given ordinal
+	 * is filled in.
+	 */
+	public int getElemFrequency(int ordinal) {
+		return frequencies[ordinal];
+	}
+	
+	/**
+	 * @return The sum of the numbers of unfilled elements of the
+	 * {@link Section}s containing the {@link Cell}.
+	 */
+	public int getNumUnfilledAround(Cell cell) {
+		int sum = 0;
+		for (int s : topology.getCellSections(cell.index))
+			sum += sectionsById[s].getNumUnfilled();
+		if (!otherSections.isEmpty())
+			for (Section section : otherSections)
+				if (section.contains(cell.coord))
+					sum += section.getNumUnfilled();
+		return sum;
+	}
+	
 	public Cell getCell(Coord coord) {
 		return getCell(coord.row, coord.col);
 	}
 	
 	public Cell getCell(int row, int col) {
-		return grid[row][col];
+		return cells[row * numElements + col];
+	}
+	
+	/**
+	 * @param index The index of the Cell in row-major order, see
+	 * {@link SizeInfo#cellCoordToCellIndex}.
+	 */
+	public Cell getCell(int index) {
+		return cells[index];
+	}
+	
+	public Row getRow(int index) {
+		return rows.get(index);
+	}
+	
+	public Column getColumn(int index) {
+		return columns.get(index);
+	}
+	
+	public Box getBox(int index) {
+		return boxes.get(index);
+	}
+	
+	/**
+	 * @return The row, column or box with the given {@link Topology} section
+	 * id.
+	 */
+	public Section getSection(int sectionId) {
+		return sectionsById[sectionId];
 	}
 	
 	public ElementSet getElements() {
@@ -347,20 +682,14 @@ public class Grid implements Iterable<Cell> {
 	// Helper methods / Converters
 	
 	public int[] getElemFrequencies() {
-		int[] elemFrequencies = new int[numElements];
-		for (Cell cell : this) {
-			Element e = cell.getValue();
-			if (e != null)
-				elemFrequencies[e.ordinal]++;
-		}
-		return elemFrequencies;
+		return frequencies.clone();
 	}
 	
 	public List<Section> collateContainingSections(Coord coord) {
-		List<Section> sections = new LinkedList<Section>();
-		sections.add(rows.get(coord.row));
-		sections.add(columns.get(coord.col));
-		sections.add(boxes.get(dimensions.cellCoordToBoxIndex(coord)));
+		int[] sectionIds = topology.getCellSections(dimensions.cellCoordToCellIndex(coord));
+		List<Section> sections = new ArrayList<Section>(sectionIds.length + otherSections.size());
+		for (int s : sectionIds)
+			sections.add(sectionsById[s]);
 		for (Section section : otherSections)
 			if (section.contains(coord))
 				sections.add(section);
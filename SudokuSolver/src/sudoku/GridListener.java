@@ -0,0 +1,16 @@
+package sudoku;
+
+/**
+ * Notified of changes to the candidates of a {@link Grid}'s {@link Cell}s,
+ * e.g. to schedule further deductions. See {@link Grid#setListener}.
+ */
+public interface GridListener {
+
+	/**
+	 * Called whenever an {@link Element} stops being an eligible option for a
+	 * Cell, either because a peer was filled in with it, or because the Cell
+	 * itself was filled in with another Element.
+	 */
+	void candidateRemoved(Cell cell, Element element);
+
+}
@@ -0,0 +1,194 @@
+package sudoku;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+import sudoku.ElementSet.CannotCreateElementSetException;
+import util.Coord;
+import util.Dims;
+
+/**
+ * Reads a stream of puzzles, one {@link Grid} at a time, in either of two
+ * formats, which may be mixed in the same stream:
+ * <ul>
+ * <li>The format described in sudoku_save_format.txt: a line with the
+ * dimensions of a {@link Box}, a line with the element strings, and a line
+ * per row with the indices of the elements filled in, separated by commas.
+ * <li>The common one-puzzle-per-line format, e.g. 81 characters for a 9x9
+ * grid, with the digits 1-9 (then A-Z for larger grids) as elements and '.'
+ * or '0' for empty cells.
+ * </ul>
+ * Blank lines are skipped, and a '#' at the start of a line or after
+ * whitespace starts a comment.
+ */
+public class GridReader implements Closeable {
+
+	/**
+	 * The elements of one-line puzzles, in order; a grid with n elements uses
+	 * the first n of them.
+	 */
+	public static final String ONE_LINE_ELEMENTS = "123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+	private final BufferedReader reader;
+	private int lineNumber = 0;
+
+	public GridReader(Reader reader) {
+		this.reader = reader instanceof BufferedReader
+				? (BufferedReader) reader : new BufferedReader(reader);
+	}
+
+	/**
+	 * @return The next puzzle, or null at the end of the stream.
+	 * @throws GridFormatException If the next puzzle is malformed. Reading may
+	 * continue after it, but a badly damaged save format record can make the
+	 * following puzzles malformed too.
+	 */
+	public Grid next() throws IOException, GridFormatException {
+		String line = nextContentLine();
+		if (line == null)
+			return null;
+		if (line.indexOf(',') < 0)
+			return parseLine(line);
+		return parseSaveFormat(line);
+	}
+
+	/**
+	 * @return The number of the last line read, starting from 1.
+	 */
+	public int getLineNumber() {
+		return lineNumber;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	private Grid parseLine(String line) throws GridFormatException {
+		int numCells = line.length();
+		int numElements = (int) Math.round(Math.sqrt(numCells));
+		int boxSide = (int) Math.round(Math.sqrt(numElements));
+		if (numElements * numElements != numCells || boxSide * boxSide != numElements
+				|| numElements > ONE_LINE_ELEMENTS.length())
+			throw new GridFormatException(lineNumber, "Unsupported one-line puzzle length " + numCells);
+
+		String[] elemStrings = new String[numElements];
+		for (int i = 0; i < numElements; i++)
+			elemStrings[i] = String.valueOf(ONE_LINE_ELEMENTS.charAt(i));
+		Grid grid = createGrid(new Dims(boxSide, boxSide), elemStrings.clone());
+
+		for (int i = 0; i < numCells; i++) {
+			char c = Character.toUpperCase(line.charAt(i));
+			if (c == '.' || c == '0')
+				continue;
+			int index = ONE_LINE_ELEMENTS.indexOf(c);
+			if (index < 0 || index >= numElements)
+				throw new GridFormatException(lineNumber, "Unknown element '" + line.charAt(i) + "'");
+			fill(grid, new Coord(i / numElements, i % numElements), elemStrings[index]);
+		}
+		return grid;
+	}
+
+	private Grid parseSaveFormat(String dimsLine) throws IOException, GridFormatException {
+		String[] dims = dimsLine.split(",");
+		if (dims.length != 2)
+			throw new GridFormatException(lineNumber, "Expected the box dimensions, got \"" + dimsLine + "\"");
+		Dims cellsPerBox;
+		try {
+			cellsPerBox = new Dims(Integer.parseInt(dims[0].trim()), Integer.parseInt(dims[1].trim()));
+		} catch (NumberFormatException e) {
+			throw new GridFormatException(lineNumber, "Bad box dimensions \"" + dimsLine + "\"");
+		}
+		if (cellsPerBox.width <= 0 || cellsPerBox.height <= 0)
+			throw new GridFormatException(lineNumber, "The box dimensions must be positive");
+
+		String elemLine = nextContentLine();
+		if (elemLine == null)
+			throw new GridFormatException(lineNumber, "Missing the element strings");
+		// The indices refer to the order in the file, which the ElementSet
+		// does not keep, so look the elements up by their strings.
+		String[] elemStrings = elemLine.split(",", -1);
+		for (int i = 0; i < elemStrings.length; i++)
+			elemStrings[i] = elemStrings[i].trim();
+		int numElements = cellsPerBox.product();
+		if (elemStrings.length != numElements)
+			throw new GridFormatException(lineNumber,
+					"Expected " + numElements + " elements, got " + elemStrings.length);
+		Grid grid = createGrid(cellsPerBox, elemStrings.clone());
+
+		for (int row = 0; row < numElements; row++) {
+			String rowLine = nextContentLine();
+			if (rowLine == null)
+				throw new GridFormatException(lineNumber, "Missing row " + row);
+			String[] indices = rowLine.split(",", -1);
+			if (indices.length != numElements)
+				throw new GridFormatException(lineNumber,
+						"Expected " + numElements + " cells in row " + row + ", got " + indices.length);
+			for (int col = 0; col < numElements; col++) {
+				String index = indices[col].trim();
+				if (index.isEmpty())
+					continue;
+				int ordinal;
+				try {
+					ordinal = Integer.parseInt(index);
+				} catch (NumberFormatException e) {
+					throw new GridFormatException(lineNumber, "Bad element index \"" + index + "\"");
+				}
+				if (ordinal < 0 || ordinal >= numElements)
+					throw new GridFormatException(lineNumber, "Element index " + ordinal + " out of range");
+				fill(grid, new Coord(row, col), elemStrings[ordinal]);
+			}
+		}
+		return grid;
+	}
+
+	private Grid createGrid(Dims cellsPerBox, String[] elemStrings) throws GridFormatException {
+		try {
+			return new Grid(cellsPerBox, elemStrings);
+		} catch (CannotCreateElementSetException e) {
+			throw new GridFormatException(lineNumber, e.getMessage());
+		}
+	}
+
+	private void fill(Grid grid, Coord coord, String elemString) throws GridFormatException {
+		Element elem = grid.elements.getCorrespondingElement(elemString);
+		if (!grid.getCell(coord).isPossible(elem))
+			throw new GridFormatException(lineNumber, "Given " + elem + " at " + coord + " clashes with another given");
+		grid.set(coord, elem);
+	}
+
+	/**
+	 * @return The next line which is not blank once comments are removed, or
+	 * null at the end of the stream.
+	 */
+	private String nextContentLine() throws IOException {
+		String line;
+		while ((line = reader.readLine()) != null) {
+			lineNumber++;
+			line = stripComment(line).trim();
+			if (!line.isEmpty())
+				return line;
+		}
+		return null;
+	}
+
+	private static String stripComment(String line) {
+		for (int i = 0; i < line.length(); i++)
+			if (line.charAt(i) == '#' && (i == 0 || Character.isWhitespace(line.charAt(i - 1))))
+				return line.substring(0, i);
+		return line;
+	}
+
+	public static class GridFormatException extends Exception {
+
+		private static final long serialVersionUID = 4127608822590368410L;
+
+		public GridFormatException(long lineNumber, String message) {
+			super("Line " + lineNumber + ": " + message);
+		}
+
+	}
+
+}
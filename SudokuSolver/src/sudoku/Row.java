@@ -8,6 +8,11 @@ public class Row extends Line implements Section {
 		super(grid, index);
 	}
 
+	@Override
+	protected void collateCells() {
+		collateCells(grid.topology.rowId(index));
+	}
+
 	@Override
 	protected Coord findIthCoord(int i) {
 //		System.out.println("Row.findIthCoord, uses index. index="+index+", i="+i+", coord="+new Coord(index, i));
@@ -0,0 +1,374 @@
+package sudoku;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import sudoku.ElementSet.CannotCreateElementSetException;
+import sudoku.GridReader.GridFormatException;
+import util.Dims;
+
+/**
+ * Reads a stream of puzzles in the format described in
+ * sudoku_save_format.txt, straight from the bytes of a channel, for corpora
+ * too large to go through a {@link GridReader}.
+ *
+ * The bytes are read through a fixed buffer and parsed in place, so no
+ * String is made per line or per field. The element strings are only decoded
+ * when they differ from those of the previous puzzle; consecutive puzzles
+ * with the same dimensions and elements share an {@link ElementSet}.
+ *
+ * Each call of {@link #next()} reads one puzzle into a buffer of element
+ * ordinals, from which {@link #toGrid(Grid)} fills a reusable {@link Grid}.
+ * Comments and blank lines are handled as by GridReader.
+ */
+public class SaveFormatReader implements Closeable {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final ReadableByteChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private final byte[] bytes = buffer.array();
+	// The unread bytes of the buffer are bytes[position, limit)
+	private int position = 0;
+	private int limit = 0;
+	private boolean endOfStream = false;
+
+	// The current line, without its comment and surrounding whitespace
+	private byte[] line = new byte[256];
+	private int lineStart, lineEnd;
+	private long lineNumber = 0;
+
+	// The header of the current puzzle, kept to recognise it on the next one
+	private Dims cellsPerBox = null;
+	private byte[] elementLine = new byte[0];
+	private int numElements;
+	// An empty grid with the current dimensions and elements
+	private Grid empty;
+	// The ordinal in the ElementSet of each element index used by the file
+	private int[] ordinalOfIndex;
+	// The element ordinal of every cell of the current puzzle, or -1
+	private int[] values;
+
+	public SaveFormatReader(ReadableByteChannel channel) {
+		this.channel = channel;
+	}
+
+	public static SaveFormatReader open(File file) throws FileNotFoundException {
+		return new SaveFormatReader(new FileInputStream(file).getChannel());
+	}
+
+	/**
+	 * Read the next puzzle.
+	 * @return false at the end of the stream.
+	 * @throws GridFormatException If the puzzle is malformed. Reading may
+	 * continue after it, with the next line.
+	 */
+	public boolean next() throws IOException, GridFormatException {
+		if (!nextContentLine())
+			return false;
+		readHeader();
+		for (int row = 0; row < numElements; row++) {
+			if (!nextContentLine())
+				throw new GridFormatException(lineNumber, "Missing row " + row);
+			readRow(row);
+		}
+		return true;
+	}
+
+	/**
+	 * @return The dimensions of a {@link Box} of the current puzzle.
+	 */
+	public Dims getCellsPerBox() {
+		checkRead();
+		return cellsPerBox;
+	}
+
+	/**
+	 * @return The elements of the current puzzle.
+	 */
+	public ElementSet getElements() {
+		checkRead();
+		return empty.elements;
+	}
+
+	/**
+	 * @return The ordinal in {@link #getElements()} of the value of every
+	 * cell of the current puzzle, in row-major order, or -1 for an unfilled
+	 * cell. The array is overwritten by the next puzzle.
+	 */
+	public int[] getValues() {
+		checkRead();
+		return values;
+	}
+
+	/**
+	 * Fill a grid with the current puzzle.
+	 * @param reuse A grid returned by an earlier call, or null. It is reused
+	 * if it has the dimensions and elements of the current puzzle.
+	 * @return The filled grid.
+	 * @throws GridFormatException If two givens of the puzzle clash.
+	 */
+	public Grid toGrid(Grid reuse) throws GridFormatException {
+		checkRead();
+		Grid grid;
+		if (reuse != null && reuse.topology == empty.topology && reuse.elements == empty.elements) {
+			grid = reuse;
+			grid.copyFrom(empty);
+		} else {
+			grid = new Grid(empty);
+		}
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] < 0)
+				continue;
+			Element elem = grid.elements.getElement(values[i]);
+			Cell cell = grid.getCell(i);
+			if (!cell.isPossible(elem))
+				throw new GridFormatException(lineNumber,
+						"Given " + elem + " at " + cell.getCoord() + " clashes with another given");
+			grid.set(cell.getCoord(), elem);
+		}
+		return grid;
+	}
+
+	/**
+	 * @return The number of the last line read, starting from 1.
+	 */
+	public long getLineNumber() {
+		return lineNumber;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private void checkRead() {
+		if (empty == null)
+			throw new IllegalStateException("Call next() first");
+	}
+
+	private void readHeader() throws IOException, GridFormatException {
+		if (countFields() != 2)
+			throw new GridFormatException(lineNumber,
+					"Expected the box dimensions, got \"" + text(lineStart, lineEnd) + "\"");
+		int comma = fieldEnd(lineStart);
+		int width = parseInt(lineStart, comma);
+		int height = parseInt(comma + 1, lineEnd);
+		if (width <= 0 || height <= 0)
+			throw new GridFormatException(lineNumber, "The box dimensions must be positive");
+
+		if (!nextContentLine())
+			throw new GridFormatException(lineNumber, "Missing the element strings");
+		if (cellsPerBox != null && width == cellsPerBox.width && height == cellsPerBox.height
+				&& sameAsElementLine(lineStart, lineEnd))
+			return;
+		readElements(new Dims(width, height));
+	}
+
+	/**
+	 * Decode the element strings of the current line, and set up the
+	 * puzzles which use them.
+	 */
+	private void readElements(Dims newCellsPerBox) throws GridFormatException {
+		int newNumElements = newCellsPerBox.product();
+		int numFields = countFields();
+		if (numFields != newNumElements)
+			throw new GridFormatException(lineNumber, "Expected " + newNumElements + " elements, got " + numFields);
+		String[] elemStrings = new String[newNumElements];
+		int start = lineStart;
+		for (int i = 0; i < newNumElements; i++) {
+			int end = fieldEnd(start);
+			elemStrings[i] = text(start, end).trim();
+			start = end + 1;
+		}
+
+		// The ElementSet sorts its elements, so the ordinals differ from the
+		// indices used by the file
+		Grid newEmpty;
+		try {
+			newEmpty = new Grid(newCellsPerBox, elemStrings.clone());
+		} catch (CannotCreateElementSetException e) {
+			throw new GridFormatException(lineNumber, e.getMessage());
+		}
+		int[] newOrdinals = new int[newNumElements];
+		for (int i = 0; i < newNumElements; i++)
+			newOrdinals[i] = newEmpty.elements.getCorrespondingElement(elemStrings[i]).ordinal;
+
+		cellsPerBox = newCellsPerBox;
+		numElements = newNumElements;
+		empty = newEmpty;
+		ordinalOfIndex = newOrdinals;
+		elementLine = Arrays.copyOfRange(line, lineStart, lineEnd);
+		if (values == null || values.length != numElements * numElements)
+			values = new int[numElements * numElements];
+	}
+
+	private void readRow(int row) throws GridFormatException {
+		int numFields = countFields();
+		if (numFields != numElements)
+			throw new GridFormatException(lineNumber,
+					"Expected " + numElements + " cells in row " + row + ", got " + numFields);
+		int cell = row * numElements;
+		int start = lineStart;
+		for (int col = 0; col < numElements; col++) {
+			int end = fieldEnd(start);
+			if (isBlank(start, end)) {
+				values[cell++] = -1;
+			} else {
+				int index = parseInt(start, end);
+				if (index >= numElements)
+					throw new GridFormatException(lineNumber, "Element index " + index + " out of range");
+				values[cell++] = ordinalOfIndex[index];
+			}
+			start = end + 1;
+		}
+	}
+
+	/**
+	 * @return The non-negative number in line[start, end), which may be
+	 * surrounded by whitespace.
+	 */
+	private int parseInt(int start, int end) throws GridFormatException {
+		while (start < end && isWhitespace(line[start]))
+			start++;
+		while (end > start && isWhitespace(line[end - 1]))
+			end--;
+		if (start == end || end - start > 9)
+			throw new GridFormatException(lineNumber, "Bad number \"" + text(start, end) + "\"");
+		int value = 0;
+		for (int i = start; i < end; i++) {
+			int digit = line[i] - '0';
+			if (digit < 0 || digit > 9)
+				throw new GridFormatException(lineNumber, "Bad number \"" + text(start, end) + "\"");
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	private String text(int start, int end) {
+		return new String(line, start, end - start, UTF_8);
+	}
+
+	private boolean isBlank(int start, int end) {
+		for (int i = start; i < end; i++)
+			if (!isWhitespace(line[i]))
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return The number of comma separated fields of the current line.
+	 */
+	private int countFields() {
+		int numFields = 1;
+		for (int i = lineStart; i < lineEnd; i++)
+			if (line[i] == ',')
+				numFields++;
+		return numFields;
+	}
+
+	/**
+	 * @return The end of the field of the current line starting at start.
+	 */
+	private int fieldEnd(int start) {
+		int comma = indexOf(',', start, lineEnd);
+		return comma < 0 ? lineEnd : comma;
+	}
+
+	private boolean sameAsElementLine(int start, int end) {
+		if (end - start != elementLine.length)
+			return false;
+		for (int i = 0; i < elementLine.length; i++)
+			if (line[start + i] != elementLine[i])
+				return false;
+		return true;
+	}
+
+	private int indexOf(char c, int start, int end) {
+		for (int i = start; i < end; i++)
+			if (line[i] == c)
+				return i;
+		return -1;
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\f';
+	}
+
+	/**
+	 * Read lines until one is not blank once its comment is removed.
+	 * @return false at the end of the stream.
+	 */
+	private boolean nextContentLine() throws IOException {
+		while (readLine()) {
+			lineNumber++;
+			int end = 0;
+			while (end < lineEnd && !(line[end] == '#' && (end == 0 || isWhitespace(line[end - 1]))))
+				end++;
+			int start = 0;
+			while (start < end && isWhitespace(line[start]))
+				start++;
+			while (end > start && isWhitespace(line[end - 1]))
+				end--;
+			if (start < end) {
+				lineStart = start;
+				lineEnd = end;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Copy the next line, without its line terminator, to the start of
+	 * {@link #line}, and set {@link #lineEnd} to its length.
+	 * @return false at the end of the stream.
+	 */
+	private boolean readLine() throws IOException {
+		lineEnd = 0;
+		while (true) {
+			if (position == limit && !fill())
+				return lineEnd > 0;
+			int newline = position;
+			while (newline < limit && bytes[newline] != '\n')
+				newline++;
+			int chunk = newline - position;
+			if (lineEnd + chunk > line.length)
+				line = Arrays.copyOf(line, Math.max(line.length * 2, lineEnd + chunk));
+			System.arraycopy(bytes, position, line, lineEnd, chunk);
+			lineEnd += chunk;
+			position = newline;
+			if (newline < limit) {
+				// Skip the newline
+				position++;
+				return true;
+			}
+		}
+	}
+
+	private boolean fill() throws IOException {
+		if (endOfStream)
+			return false;
+		buffer.clear();
+		int read;
+		do {
+			read = channel.read(buffer);
+		} while (read == 0);
+		if (read < 0) {
+			endOfStream = true;
+			return false;
+		}
+		position = 0;
+		limit = buffer.position();
+		return true;
+	}
+
+}
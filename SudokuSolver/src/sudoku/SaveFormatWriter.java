@@ -0,0 +1,139 @@
+package sudoku;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+import util.Dims;
+
+/**
+ * Writes puzzles in the format described in sudoku_save_format.txt, as read
+ * by {@link SaveFormatReader} and {@link GridReader}, to a channel.
+ *
+ * The values are encoded straight into a fixed buffer. The header lines are
+ * only encoded again when the {@link ElementSet} differs from that of the
+ * previous puzzle. The elements are written in the order of their ordinals,
+ * so the indices in the rows are the ordinals.
+ */
+public class SaveFormatWriter implements Closeable, Flushable {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final WritableByteChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+	// The header of the previous puzzle
+	private ElementSet headerElements = null;
+	private Dims headerCellsPerBox = null;
+	private byte[] header;
+
+	public SaveFormatWriter(WritableByteChannel channel) {
+		this.channel = channel;
+	}
+
+	public static SaveFormatWriter create(File file) throws FileNotFoundException {
+		return new SaveFormatWriter(new FileOutputStream(file).getChannel());
+	}
+
+	/**
+	 * @throws IllegalArgumentException If an element string cannot be read
+	 * back, i.e. it contains a comma, a '#' or a line break, or starts or ends
+	 * with whitespace.
+	 */
+	public void write(Grid grid) throws IOException {
+		Dims cellsPerBox = grid.dimensions.cellsPerBox;
+		if (grid.elements != headerElements || !cellsPerBox.equals(headerCellsPerBox)) {
+			header = encodeHeader(cellsPerBox, grid.elements);
+			headerElements = grid.elements;
+			headerCellsPerBox = cellsPerBox;
+		}
+		put(header);
+
+		int numElements = grid.numElements;
+		int i = 0;
+		for (int row = 0; row < numElements; row++) {
+			for (int col = 0; col < numElements; col++) {
+				if (col > 0)
+					put((byte) ',');
+				Element value = grid.getCell(i++).getValue();
+				if (value != null)
+					putInt(value.ordinal);
+			}
+			put((byte) '\n');
+		}
+	}
+
+	/**
+	 * Write out everything written so far.
+	 */
+	@Override
+	public void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	private static byte[] encodeHeader(Dims cellsPerBox, ElementSet elements) {
+		StringBuilder header = new StringBuilder();
+		header.append(cellsPerBox.width).append(',').append(cellsPerBox.height).append('\n');
+		for (Element elem : elements) {
+			checkContent(elem.content);
+			if (elem.ordinal > 0)
+				header.append(',');
+			header.append(elem.content);
+		}
+		header.append('\n');
+		return header.toString().getBytes(UTF_8);
+	}
+
+	private static void checkContent(String content) {
+		if (content.indexOf(',') >= 0 || content.indexOf('#') >= 0
+				|| content.indexOf('\n') >= 0 || content.indexOf('\r') >= 0)
+			throw new IllegalArgumentException("Element \"" + content + "\" contains a separator");
+		if (!content.trim().equals(content))
+			throw new IllegalArgumentException("Element \"" + content + "\" has surrounding whitespace");
+	}
+
+	private void put(byte b) throws IOException {
+		if (!buffer.hasRemaining())
+			flush();
+		buffer.put(b);
+	}
+
+	private void put(byte[] bytes) throws IOException {
+		int offset = 0;
+		while (offset < bytes.length) {
+			if (!buffer.hasRemaining())
+				flush();
+			int length = Math.min(buffer.remaining(), bytes.length - offset);
+			buffer.put(bytes, offset, length);
+			offset += length;
+		}
+	}
+
+	private void putInt(int value) throws IOException {
+		int divisor = 1;
+		while (value / divisor >= 10)
+			divisor *= 10;
+		for (; divisor > 0; divisor /= 10)
+			put((byte) ('0' + value / divisor % 10));
+	}
+
+}
@@ -17,6 +17,7 @@ public interface Section extends Iterable<Cell> {
 	boolean contains(Coord coord);
 	
 	void setFilledIn(Element element, Cell cell);
+	void setNotFilledIn(Element element);
 	void resetFilledCount();
 	
 	boolean isFull();
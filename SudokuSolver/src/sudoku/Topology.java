@@ -0,0 +1,140 @@
+package sudoku;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import util.Coord;
+import util.Dims;
+
+/**
+ * The layout of the standard {@link Section}s of a {@link Grid}, i.e. its
+ * {@link Row}s, {@link Column}s and {@link Box}es, precomputed as tables of
+ * {@link Cell} and section indices.
+ *
+ * A Topology only depends on the dimensions of a Box, so it is created once
+ * per box shape and shared by all Grids of that shape. It is immutable; the
+ * arrays returned by its getters must not be modified.
+ *
+ * Sections are identified by an id: the rows come first, then the columns,
+ * then the boxes, each in order of their index. Cells are identified by
+ * their index in row-major order, see {@link SizeInfo#cellCoordToCellIndex}.
+ */
+public final class Topology {
+
+	private static final ConcurrentMap<Long, Topology> cache = new ConcurrentHashMap<Long, Topology>();
+
+	public final SizeInfo dimensions;
+	public final int numElements;
+	public final int numCells;
+	public final int numSections;
+
+	private final Coord[] coords;
+	private final int[][] sectionCells;
+	private final int[][] cellSections;
+	private final int[][] peers;
+
+	/**
+	 * @return The Topology of Grids whose Boxes have the given dimensions.
+	 */
+	public static Topology get(Dims cellsPerBox) {
+		Long key = (long) cellsPerBox.width << 32 | cellsPerBox.height;
+		Topology topology = cache.get(key);
+		if (topology == null) {
+			Topology created = new Topology(cellsPerBox);
+			topology = cache.putIfAbsent(key, created);
+			if (topology == null)
+				topology = created;
+		}
+		return topology;
+	}
+
+	private Topology(Dims cellsPerBox) {
+		this.dimensions = new SizeInfo(cellsPerBox);
+		this.numElements = cellsPerBox.product();
+		this.numCells = numElements * numElements;
+		this.numSections = 3 * numElements;
+
+		this.coords = new Coord[numCells];
+		for (int i = 0; i < numCells; i++)
+			coords[i] = dimensions.cellIndexToCellCoord(i);
+
+		this.sectionCells = new int[numSections][numElements];
+		this.cellSections = new int[numCells][3];
+		int boxesWide = dimensions.boxesPerGrid.width;
+		for (int s = 0; s < numElements; s++) {
+			Coord topLeft = new Coord(s / boxesWide, s % boxesWide).multiply(cellsPerBox);
+			for (int i = 0; i < numElements; i++) {
+				sectionCells[rowId(s)][i] = s * numElements + i;
+				sectionCells[columnId(s)][i] = i * numElements + s;
+				Coord boxCoord = topLeft.plus(new Coord(i / cellsPerBox.width, i % cellsPerBox.width));
+				sectionCells[boxId(s)][i] = dimensions.cellCoordToCellIndex(boxCoord);
+			}
+		}
+		for (int c = 0; c < numCells; c++) {
+			cellSections[c][0] = rowId(coords[c].row);
+			cellSections[c][1] = columnId(coords[c].col);
+			cellSections[c][2] = boxId(dimensions.cellCoordToBoxIndex(coords[c]));
+		}
+
+		this.peers = new int[numCells][];
+		boolean[] isPeer = new boolean[numCells];
+		int[] found = new int[numSections];
+		for (int c = 0; c < numCells; c++) {
+			int numPeers = 0;
+			for (int s : cellSections[c])
+				for (int p : sectionCells[s])
+					if (p != c && !isPeer[p]) {
+						isPeer[p] = true;
+						found[numPeers++] = p;
+					}
+			peers[c] = Arrays.copyOf(found, numPeers);
+			Arrays.sort(peers[c]);
+			for (int p : peers[c])
+				isPeer[p] = false;
+		}
+	}
+
+	public int rowId(int row) {
+		return row;
+	}
+
+	public int columnId(int col) {
+		return numElements + col;
+	}
+
+	public int boxId(int boxIndex) {
+		return 2 * numElements + boxIndex;
+	}
+
+	/**
+	 * @return The coordinate of a cell, shared by all Grids of this shape.
+	 */
+	public Coord getCoord(int cellIndex) {
+		return coords[cellIndex];
+	}
+
+	/**
+	 * @return The indices of the cells of a section, in the order the section
+	 * iterates over them.
+	 */
+	public int[] getSectionCells(int sectionId) {
+		return sectionCells[sectionId];
+	}
+
+	/**
+	 * @return The ids of the row, column and box containing a cell.
+	 */
+	public int[] getCellSections(int cellIndex) {
+		return cellSections[cellIndex];
+	}
+
+	/**
+	 * @return The indices of the other cells sharing a section with a cell,
+	 * in increasing order.
+	 */
+	public int[] getPeers(int cellIndex) {
+		return peers[cellIndex];
+	}
+
+}
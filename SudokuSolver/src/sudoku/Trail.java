@@ -0,0 +1,86 @@
+package sudoku;
+
+import java.util.Arrays;
+
+/**
+ * An undo log of the changes made to a {@link Grid}: values assigned to
+ * {@link Cell}s and candidates removed from them.
+ * While a Trail is attached to a Grid, every change is recorded, so that the
+ * Grid can be rolled back to any earlier {@link #mark()} instead of being
+ * copied before a guess.
+ *
+ * NOTE: Only assignments are recorded. Clearing a cell (setting it to null)
+ * is not supported while a Trail is attached.
+ */
+public class Trail {
+
+	private static final int VALUE_ASSIGNED = 0;
+	private static final int CANDIDATE_REMOVED = 1;
+
+	private final Grid grid;
+	private final Cell[] cells;
+
+	// Each entry takes two ints: (cellIndex << 1 | kind), element ordinal
+	private int[] entries = new int[256];
+	private int size = 0;
+
+	/**
+	 * Create a Trail and attach it to the given Grid, replacing any Trail
+	 * which was previously attached.
+	 */
+	public Trail(Grid grid) {
+		this.grid = grid;
+		this.cells = new Cell[grid.dimensions.cellsPerGrid.product()];
+		for (Cell cell : grid)
+			cells[cell.index] = cell;
+		grid.trail = this;
+	}
+
+	/**
+	 * Stop recording changes to the Grid.
+	 */
+	public void detach() {
+		if (grid.trail == this)
+			grid.trail = null;
+	}
+
+	/**
+	 * @return A marker for the current state of the Grid, to be passed to
+	 * {@link #undo(int)}.
+	 */
+	public int mark() {
+		return size;
+	}
+
+	/**
+	 * Roll the Grid back to the state it was in when the mark was taken.
+	 */
+	public void undo(int mark) {
+		assert (mark <= size);
+		while (size > mark) {
+			size -= 2;
+			Cell cell = cells[entries[size] >>> 1];
+			Element elem = grid.elements.getElement(entries[size + 1]);
+			if ((entries[size] & 1) == CANDIDATE_REMOVED)
+				cell.setPossible(elem);
+			else
+				grid.unassign(cell, elem);
+		}
+	}
+
+	void valueAssigned(Cell cell, Element value) {
+		push(cell.index << 1 | VALUE_ASSIGNED, value.ordinal);
+	}
+
+	void candidateRemoved(Cell cell, int ordinal) {
+		push(cell.index << 1 | CANDIDATE_REMOVED, ordinal);
+	}
+
+	private void push(int key, int ordinal) {
+		if (size == entries.length)
+			entries = Arrays.copyOf(entries, size * 2);
+		entries[size++] = key;
+		entries[size++] = ordinal;
+	}
+
+}